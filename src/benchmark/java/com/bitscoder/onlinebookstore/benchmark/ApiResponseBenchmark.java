@@ -0,0 +1,43 @@
+package com.bitscoder.onlinebookstore.benchmark;
+
+import com.bitscoder.onlinebookstore.dto.ApiResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building the ApiResponse that wraps every service result.
+ *
+ * allArgsConstructor is how the services build it: one LocalDateTime.now() and one UUID.randomUUID(), passed in.
+ * doubleInitialisation is what it cost while the fields also had initialisers, which ran before the constructor
+ * overwrote them, so every response made a second clock read and a second SecureRandom UUID. Run it with -t 4 or more
+ * to see how the shared SecureRandom behind UUID.randomUUID scales across request threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ApiResponseBenchmark {
+
+    private final Object data = new Object();
+
+    @Benchmark
+    public ApiResponse<Object> allArgsConstructor() {
+        return new ApiResponse<>(LocalDateTime.now(), UUID.randomUUID().toString(), true, "Fetched book", data);
+    }
+
+    @Benchmark
+    public ApiResponse<Object> doubleInitialisation() {
+        ApiResponse<Object> response = new ApiResponse<>();
+        response.setRequestTime(LocalDateTime.now());
+        response.setReferenceId(UUID.randomUUID().toString());
+        response.setStatus(true);
+        response.setMessage("Fetched book");
+        response.setData(data);
+        return response;
+    }
+}
@@ -0,0 +1,97 @@
+package com.bitscoder.onlinebookstore.benchmark;
+
+import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.security.jwt.AuthTokenFilter;
+import com.bitscoder.onlinebookstore.security.jwt.JwtUtils;
+import com.bitscoder.onlinebookstore.security.services.PrincipalCache;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.Cookie;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second through AuthTokenFilter for a browser that sends its token cookie with every request.
+ *
+ * authenticatedPage is the work done for a page under /app when the principal is already cached: finding the cookie,
+ * the cache lookup and setting up the SecurityContext. Public pages and static resources used to pay the same.
+ * staticAsset and publicPage are the fast path: shouldNotFilter matches the path and the request goes straight on.
+ * The requests that reach the home page or a static resource through the application run the separate
+ * publicContentFilterChain, which has no token filter at all; LoadTest measures them end to end.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AuthTokenFilterBenchmark {
+
+    private final FilterChain chain = (request, response) -> { };
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+    private AuthTokenFilter filter;
+    private MockHttpServletRequest staticAsset;
+    private MockHttpServletRequest publicPage;
+    private MockHttpServletRequest authenticatedPage;
+
+    @Setup
+    public void setup() {
+        JwtUtils jwtUtils = JwtUtilsBenchmark.newJwtUtils();
+        List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority(Roles.USER.name()));
+        UserDetailsImpl user = new UserDetailsImpl("User01", "Reader", "reader@bookstore.com", "secret", Roles.USER, authorities);
+        String token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(user, null, authorities));
+        PrincipalCache principalCache = new PrincipalCache(300_000, 10_000);
+        principalCache.put(token, user, new Date(System.currentTimeMillis() + 3_600_000));
+
+        filter = new AuthTokenFilter();
+        ReflectionTestUtils.setField(filter, "jwtUtils", jwtUtils);
+        ReflectionTestUtils.setField(filter, "principalCache", principalCache);
+        ReflectionTestUtils.setField(filter, "meterRegistry", new SimpleMeterRegistry());
+        filter.init();
+
+        staticAsset = request("/css/app.css", token);
+        publicPage = request("/auth/login", token);
+        authenticatedPage = request("/app/books", token);
+    }
+
+    @Benchmark
+    public MockHttpServletRequest staticAsset() throws Exception {
+        filter.doFilter(staticAsset, response, chain);
+        return staticAsset;
+    }
+
+    @Benchmark
+    public MockHttpServletRequest publicPage() throws Exception {
+        filter.doFilter(publicPage, response, chain);
+        return publicPage;
+    }
+
+    @Benchmark
+    public MockHttpServletRequest authenticatedPage() throws Exception {
+        filter.doFilter(authenticatedPage, response, chain);
+        // as the security filter chain does at the end of every request
+        SecurityContextHolder.clearContext();
+        return authenticatedPage;
+    }
+
+
+    // HELPER METHODS
+    // a browser sends the CSRF and other cookies along with the token
+    private static MockHttpServletRequest request(String path, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setServletPath(path);
+        request.setCookies(new Cookie("XSRF-TOKEN", "2f1c6a0e-5d1b-4c7e-9a43-7d2b8f0e6c11"),
+                new Cookie("flash", ""), new Cookie("token", token));
+        return request;
+    }
+}
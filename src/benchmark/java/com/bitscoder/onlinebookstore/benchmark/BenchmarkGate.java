@@ -0,0 +1,90 @@
+package com.bitscoder.onlinebookstore.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH JSON result with a baseline and fails when a benchmark got slower than the allowed tolerance.
+ *
+ * Benchmarks are matched by name and parameters. For throughput modes a lower score is worse, for time modes
+ * (avgt, sample, ss) a higher one. A change only counts as a regression when it exceeds the tolerance and is also
+ * larger than the error of both measurements, so noise between runs does not fail the gate. Benchmarks missing from
+ * either file are listed but do not fail it.
+ *
+ * Arguments: baseline.json [result.json] [tolerance percent, default 10]
+ * Exits with status 1 when any benchmark regressed.
+ */
+public class BenchmarkGate {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: BenchmarkGate baseline.json [result.json] [tolerance %]");
+            System.exit(2);
+        }
+        String resultFile = args.length > 1 ? args[1] : BenchmarkMain.DEFAULT_RESULT_FILE;
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.10;
+        Map<String, JsonNode> baseline = read(args[0]);
+        Map<String, JsonNode> current = read(resultFile);
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            JsonNode metric = entry.getValue().get("primaryMetric");
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %9s%n", entry.getKey(), "-", metric.get("score").asDouble(), "new");
+                continue;
+            }
+            JsonNode beforeMetric = before.get("primaryMetric");
+            double old = beforeMetric.get("score").asDouble();
+            double now = metric.get("score").asDouble();
+            boolean higherIsBetter = entry.getValue().get("mode").asText().equals("thrpt");
+            double worse = higherIsBetter ? old - now : now - old;
+            double noise = errorOf(beforeMetric) + errorOf(metric);
+            boolean regressed = worse > old * tolerance && worse > noise;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%%%s%n", entry.getKey(), old, now, (now - old) / old * 100,
+                    regressed ? "  REGRESSED" : "");
+        }
+        baseline.keySet().stream()
+                .filter(name -> !current.containsKey(name))
+                .forEach(name -> System.out.printf("%-70s %14s %14s %9s%n", name, "", "-", "missing"));
+
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) regressed by more than " + Math.round(tolerance * 100) + "%");
+            System.exit(1);
+        }
+    }
+
+    // keyed by benchmark name plus its parameters, e.g. "...BookJsonBenchmark.writeToStream size=100"
+    private static Map<String, JsonNode> read(String file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(new File(file))) {
+            StringBuilder key = new StringBuilder(result.get("benchmark").asText());
+            JsonNode params = result.get("params");
+            if (params != null) {
+                Iterator<Map.Entry<String, JsonNode>> fields = params.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> param = fields.next();
+                    key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+                }
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    // JMH reports NaN as the error of runs with too few iterations
+    private static double errorOf(JsonNode metric) {
+        double error = metric.path("scoreError").asDouble(0);
+        return Double.isNaN(error) ? 0 : error;
+    }
+}
@@ -0,0 +1,23 @@
+package com.bitscoder.onlinebookstore.benchmark;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs JMH like org.openjdk.jmh.Main, but writes the results as JSON to target/jmh-result.json unless the arguments
+ * choose another result file (-rf/-rff), so every run leaves a file that BenchmarkGate can compare.
+ */
+public class BenchmarkMain {
+
+    static final String DEFAULT_RESULT_FILE = "target/jmh-result.json";
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(List.of(args));
+        if (!jmhArgs.contains("-rf") && !jmhArgs.contains("-rff")) {
+            jmhArgs.addAll(List.of("-rf", "json", "-rff", DEFAULT_RESULT_FILE));
+        }
+        Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
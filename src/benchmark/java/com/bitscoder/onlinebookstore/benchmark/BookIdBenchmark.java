@@ -0,0 +1,84 @@
+package com.bitscoder.onlinebookstore.benchmark;
+
+import com.bitscoder.onlinebookstore.util.TimeOrderedId;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Id generation and primary key insert throughput.
+ *
+ * legacyId and timeOrderedId measure the cost of generating one id. The legacy id ("Book" plus 5 hex characters)
+ * has only about a million values, so it is not used for the insert benchmark: it would hit a duplicate key within
+ * the first few thousand rows.
+ * insertBatch inserts batches of 1000 rows into an embedded H2 table keyed by a varchar primary key, as a stand-in
+ * for the books table, comparing random keys (a full random UUID, the obvious collision-free alternative)
+ * with time-ordered ids. The table keeps growing across iterations, so later batches insert into a large index.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookIdBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Benchmark
+    public String legacyId() {
+        return "Book" + UUID.randomUUID().toString().substring(0, 5);
+    }
+
+    @Benchmark
+    public String timeOrderedId() {
+        return TimeOrderedId.next("Book");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] insertBatch(Table table) throws SQLException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            table.insert.setString(1, table.nextId());
+            table.insert.setString(2, "Title");
+            table.insert.addBatch();
+        }
+        int[] counts = table.insert.executeBatch();
+        table.connection.commit();
+        return counts;
+    }
+
+    @State(Scope.Thread)
+    public static class Table {
+
+        @Param({"randomUuid", "timeOrdered"})
+        public String keys;
+
+        private Connection connection;
+        private PreparedStatement insert;
+
+        @Setup(Level.Trial)
+        public void setup() throws SQLException {
+            connection = DriverManager.getConnection("jdbc:h2:mem:books_" + keys);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE books (id VARCHAR(255) PRIMARY KEY, title VARCHAR(255))");
+            }
+            connection.setAutoCommit(false);
+            insert = connection.prepareStatement("INSERT INTO books (id, title) VALUES (?, ?)");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws SQLException {
+            connection.close();
+        }
+
+        String nextId() {
+            return keys.equals("timeOrdered") ? TimeOrderedId.next("Book") : "Book" + UUID.randomUUID();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.bitscoder.onlinebookstore.benchmark;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialisation of BookDto.Response lists, with an ObjectMapper configured like Spring Boot's.
+ *
+ * writeValueAsBytes builds the whole document in memory first, as code that serialises to a String or byte[] does.
+ * writeToStream is what the message converter does for a JSON response: it writes through to the output stream.
+ * streamPerBook is the export endpoint of BookApiController, which writes one book at a time with a JsonGenerator.
+ * The output stream discards the bytes, so only the serialisation is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookJsonBenchmark {
+
+    @Param({"20", "100", "1000"})
+    public int size;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    // unlike OutputStream.nullOutputStream() it stays usable after the mapper closes it
+    private final OutputStream discard = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+    private List<BookDto.Response> books;
+
+    @Setup
+    public void setup() {
+        books = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            books.add(new BookDto.Response(String.format("Book01HZX3Q4RS%012d", i), "Title " + i, "Author " + i % 100,
+                    "978-0-" + i, Genre.values()[i % Genre.values().length], LocalDate.of(1950 + i % 70, 1, 1),
+                    i % 20, null, 1));
+        }
+    }
+
+    @Benchmark
+    public byte[] writeValueAsBytes() throws IOException {
+        return objectMapper.writeValueAsBytes(books);
+    }
+
+    @Benchmark
+    public void writeToStream() throws IOException {
+        objectMapper.writeValue(discard, books);
+    }
+
+    @Benchmark
+    public void streamPerBook() throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(discard)) {
+            generator.writeStartArray();
+            for (BookDto.Response book : books) {
+                generator.writeObject(book);
+            }
+            generator.writeEndArray();
+        }
+    }
+}
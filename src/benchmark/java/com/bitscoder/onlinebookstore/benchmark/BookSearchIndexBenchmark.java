@@ -0,0 +1,120 @@
+package com.bitscoder.onlinebookstore.benchmark;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.dto.BookSearchResult;
+import com.bitscoder.onlinebookstore.search.BookSearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of BookSearchIndex over a synthetic catalogue of one million books.
+ *
+ * Titles are 2 to 5 words drawn from a 50,000 word vocabulary with a skewed distribution, so a few words are very
+ * common (long postings) and most are rare, like real titles. Authors are drawn from 20,000 names.
+ * Each benchmark runs a fixed query; the words are picked at setup so the same run always asks the same questions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g"})
+public class BookSearchIndexBenchmark {
+
+    private static final String[] SYLLABLES = {"ka", "ro", "mi", "ten", "lu", "sa", "ver", "no", "di", "ga", "pel", "is",
+            "tor", "an", "be", "quo", "ri", "sha", "mon", "el"};
+    private static final Genre[] GENRES = Genre.values();
+
+    @Param("1000000")
+    public int books;
+
+    private BookSearchIndex index;
+    private String commonWord;
+    private String rareWord;
+    private String twoWords;
+    private String typo;
+    private String prefix;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        String[] vocabulary = words(random, 50_000);
+        String[] authors = words(random, 20_000);
+        index = new BookSearchIndex();
+        index.rebuild(sink -> {
+            for (int i = 0; i < books; i++) {
+                StringBuilder title = new StringBuilder();
+                int length = 2 + random.nextInt(4);
+                for (int w = 0; w < length; w++) {
+                    title.append(w == 0 ? "" : " ").append(vocabulary[skewed(random, vocabulary.length)]);
+                }
+                BookDto.Response book = new BookDto.Response();
+                book.setId(String.format("Book%07d", i));
+                book.setTitle(title.toString());
+                book.setAuthor(authors[random.nextInt(authors.length)] + " " + authors[random.nextInt(authors.length)]);
+                book.setGenre(GENRES[random.nextInt(GENRES.length)]);
+                sink.accept(book);
+            }
+        });
+        commonWord = vocabulary[0];
+        rareWord = vocabulary[vocabulary.length / 2];
+        twoWords = vocabulary[3] + " " + vocabulary[40];
+        // drop the second letter to make a typo
+        typo = rareWord.charAt(0) + rareWord.substring(2);
+        prefix = vocabulary[100].substring(0, 4);
+    }
+
+    @Benchmark
+    public BookSearchResult commonWord() {
+        return index.search(commonWord, null, 50);
+    }
+
+    @Benchmark
+    public BookSearchResult rareWord() {
+        return index.search(rareWord, null, 50);
+    }
+
+    @Benchmark
+    public BookSearchResult twoWords() {
+        return index.search(twoWords, null, 50);
+    }
+
+    @Benchmark
+    public BookSearchResult twoWordsInGenre() {
+        return index.search(twoWords, Genre.FICTION, 50);
+    }
+
+    @Benchmark
+    public BookSearchResult typo() {
+        return index.search(typo, null, 50);
+    }
+
+    @Benchmark
+    public List<String> autocomplete() {
+        return index.suggest(prefix, 10);
+    }
+
+    // HELPER METHODS
+    private static String[] words(Random random, int count) {
+        String[] words = new String[count];
+        for (int i = 0; i < count; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words[i] = word.append(i % 97).toString();
+        }
+        return words;
+    }
+
+    // low indexes are picked far more often than high ones
+    private static int skewed(Random random, int bound) {
+        double r = random.nextDouble();
+        return (int) (bound * r * r * r);
+    }
+}
@@ -0,0 +1,86 @@
+package com.bitscoder.onlinebookstore.benchmark;
+
+import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.security.jwt.JwtUtils;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.SecretKey;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokens verified per second by the request path of AuthTokenFilter.
+ *
+ * legacyValidateThenExtract is what JwtUtils used to do: build a new parser, verify the token,
+ * then build another parser and verify it again to read the subject.
+ * sharedParserSingleParse is a cache miss in JwtUtils: one verification with the parser built at init.
+ * cachedClaims is a repeat request for an already verified token.
+ * generateToken is the signing done once per sign-in.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class JwtUtilsBenchmark {
+
+    static final String SECRET = "c2VjcmV0LWtleS1mb3ItYmVuY2htYXJraW5nLW9ubHktMDEyMzQ1Njc4OWFiY2RlZg==";
+
+    private JwtUtils jwtUtils;
+    private SecretKey key;
+    private JwtParser sharedParser;
+    private String token;
+    private UsernamePasswordAuthenticationToken authentication;
+
+    @Setup
+    public void setup() {
+        jwtUtils = newJwtUtils();
+        key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(SECRET));
+        sharedParser = Jwts.parserBuilder().setSigningKey(key).build();
+
+        List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority(Roles.USER.name()));
+        UserDetailsImpl user = new UserDetailsImpl("User01", "Reader", "reader@bookstore.com", "secret", Roles.USER, authorities);
+        authentication = new UsernamePasswordAuthenticationToken(user, null, authorities);
+        token = jwtUtils.generateJwtToken(authentication);
+    }
+
+    static JwtUtils newJwtUtils() {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3_600_000);
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecretKey", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtVerifiedCacheMaxSize", 10_000L);
+        jwtUtils.init();
+        return jwtUtils;
+    }
+
+    @Benchmark
+    public String legacyValidateThenExtract() {
+        Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+        return Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody().getSubject();
+    }
+
+    @Benchmark
+    public String sharedParserSingleParse() {
+        return sharedParser.parseClaimsJws(token).getBody().getSubject();
+    }
+
+    @Benchmark
+    public Claims cachedClaims() {
+        return jwtUtils.getClaimsFromJwtToken(token);
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtUtils.generateJwtToken(authentication);
+    }
+}
@@ -0,0 +1,99 @@
+package com.bitscoder.onlinebookstore.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop HTTP load test against a running application, for comparing the platform thread pool with virtual threads.
+ *
+ * For every concurrency level, that many simulated clients each send a request, wait for the response and send the
+ * next one, for the given number of seconds. It prints the completed requests per second, the p50/p99/max latency and
+ * the failures (non-2xx responses, timeouts and refused connections) per level. The highest level that still completes
+ * without failures and with an acceptable p99 is the maximum concurrency the server sustains.
+ * Requests are sent asynchronously, so the harness itself needs no thread per client.
+ *
+ * Arguments: url concurrency[,concurrency...] seconds [cookie]
+ * The optional cookie (for example "token=...", taken from a signed in browser) is sent with every request.
+ */
+public class LoadTest {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: LoadTest url concurrency[,concurrency...] seconds [cookie]");
+            System.exit(2);
+        }
+        URI uri = URI.create(args[0]);
+        long seconds = Long.parseLong(args[2]);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT).GET();
+        if (args.length > 3) {
+            request.header("Cookie", args[3]);
+        }
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(REQUEST_TIMEOUT)
+                .build();
+
+        System.out.printf("%-12s %10s %10s %10s %10s %10s%n", "concurrency", "req/s", "p50 ms", "p99 ms", "max ms", "failures");
+        for (String level : args[1].split(",")) {
+            Result result = run(client, request.build(), Integer.parseInt(level.trim()), seconds);
+            System.out.printf("%-12s %10.0f %10.1f %10.1f %10.1f %10d%n", level.trim(), result.throughput(),
+                    result.percentile(0.50), result.percentile(0.99), result.percentile(1.0), result.failures());
+        }
+    }
+
+    private static Result run(HttpClient client, HttpRequest request, int concurrency, long seconds) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        LongAdder failures = new LongAdder();
+        List<CompletableFuture<Void>> clients = new ArrayList<>(concurrency);
+        long started = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            clients.add(loop(client, request, deadline, latencies, failures));
+        }
+        CompletableFuture.allOf(clients.toArray(CompletableFuture[]::new)).join();
+        double elapsedSeconds = (System.nanoTime() - started) / 1e9;
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        return new Result(sorted, sorted.length / elapsedSeconds, failures.sum());
+    }
+
+    // one simulated client: the next request is chained on the completion of the previous one
+    private static CompletableFuture<Void> loop(HttpClient client, HttpRequest request, long deadline,
+                                                ConcurrentLinkedQueue<Long> latencies, LongAdder failures) {
+        if (System.nanoTime() >= deadline) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long sent = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    if (error == null && response.statusCode() < 300) {
+                        latencies.add(System.nanoTime() - sent);
+                    } else {
+                        failures.increment();
+                    }
+                    return null;
+                })
+                .thenCompose(ignored -> loop(client, request, deadline, latencies, failures));
+    }
+
+    private record Result(long[] sortedLatencies, double throughput, long failures) {
+
+        double percentile(double p) {
+            if (sortedLatencies.length == 0) {
+                return Double.NaN;
+            }
+            int index = (int) Math.ceil(p * sortedLatencies.length) - 1;
+            return sortedLatencies[Math.max(0, index)] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.bitscoder.onlinebookstore.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to verify one password per BCrypt work factor, for choosing lms.bcryptStrength.
+ *
+ * Each step of the strength doubles the cost. Pick the highest strength whose matches time on the production hardware
+ * is still acceptable for a sign-in (a common target is 100-250 ms); lms.passwordHashThreads such hashes run at once,
+ * so the sign-in throughput of one instance is roughly threads * 1000 / (ms per hash) per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class PasswordEncoderBenchmark {
+
+    @Param({"10", "11", "12", "13"})
+    public int strength;
+
+    private BCryptPasswordEncoder encoder;
+    private String hash;
+
+    @Setup
+    public void setup() {
+        encoder = new BCryptPasswordEncoder(strength);
+        hash = encoder.encode("correct horse battery staple");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return encoder.matches("correct horse battery staple", hash);
+    }
+}
@@ -0,0 +1,48 @@
+package com.bitscoder.onlinebookstore.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.models.User;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of UserDetailsImpl.build, which runs on every PrincipalCache miss in AuthTokenFilter and on every sign-in.
+ *
+ * The build itself is a handful of field copies; with the logger at INFO (the production default) most of the time
+ * goes to the two log lines it writes. WARN shows the cost without them. The log output goes to the console of the
+ * benchmark fork, which is cheaper than the file or socket appender of a production setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserDetailsBenchmark {
+
+    @Param({"INFO", "WARN"})
+    public String logLevel;
+
+    private User user;
+
+    @Setup
+    public void setup() {
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.toLevel(logLevel));
+        user = new User();
+        user.setId("User01HZX3Q4RS0001ABCDEFGHJK");
+        user.setName("reader");
+        user.setEmail("reader@bookstore.com");
+        user.setPassword("$2a$10$abcdefghijklmnopqrstuuTg3HWYrYo8fX0J6P4ZNdnKxSPqJqFmu");
+        user.setRoles(Roles.USER);
+    }
+
+    @Benchmark
+    public UserDetailsImpl build() {
+        return UserDetailsImpl.build(user);
+    }
+}
@@ -2,8 +2,10 @@ package com.bitscoder.onlinebookstore;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.PropertySource;
 
 @SpringBootApplication
+@PropertySource("classpath:bookstore-defaults.properties")
 public class OnlineBookStoreApplication {
 
     public static void main(String[] args) {
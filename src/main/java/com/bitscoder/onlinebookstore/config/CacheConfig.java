@@ -0,0 +1,37 @@
+package com.bitscoder.onlinebookstore.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * The CacheConfig class sets up the in-process caches of the application.
+ *
+ * The books cache holds BookDto.Response objects keyed by book id. It is bounded by lms.bookCacheMaxSize,
+ * entries expire lms.bookCacheTtlMs after they are written, and statistics are recorded so that hit and miss
+ * counts are published by Actuator under the cache.gets metric.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String BOOKS_CACHE = "books";
+
+    @Bean
+    public CacheManager cacheManager(@Value("${lms.bookCacheMaxSize:10000}") long maxSize,
+                                     @Value("${lms.bookCacheTtlMs:600000}") long ttlMs) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(BOOKS_CACHE);
+        cacheManager.setAllowNullValues(false);
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats());
+        return cacheManager;
+    }
+}
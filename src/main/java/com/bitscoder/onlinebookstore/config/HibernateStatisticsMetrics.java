@@ -0,0 +1,79 @@
+package com.bitscoder.onlinebookstore.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * The HibernateStatisticsMetrics class publishes the Hibernate statistics (hibernate.generate_statistics) as meters
+ * under the hibernate.* names: statements, entity and collection operations, queries, flushes, transactions and
+ * optimistic lock failures. The values are read from the Statistics object when the registry is scraped, so nothing
+ * is added to the request path beyond Hibernate's own counting. Nothing is registered while the statistics are off.
+ */
+@Component
+public class HibernateStatisticsMetrics implements MeterBinder {
+
+    private final Statistics statistics;
+
+    public HibernateStatisticsMetrics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!statistics.isStatisticsEnabled()) {
+            return;
+        }
+        counter(registry, "hibernate.sessions.open", "Sessions opened", Statistics::getSessionOpenCount);
+        counter(registry, "hibernate.connections.obtained", "JDBC connections obtained", Statistics::getConnectCount);
+        counter(registry, "hibernate.statements.prepared", "Statements prepared", Statistics::getPrepareStatementCount);
+        counter(registry, "hibernate.flushes", "Session flushes", Statistics::getFlushCount);
+        counter(registry, "hibernate.transactions", "Transactions completed", Statistics::getTransactionCount);
+        counter(registry, "hibernate.optimistic.failures", "Optimistic lock failures", Statistics::getOptimisticFailureCount);
+
+        entityCounter(registry, "load", Statistics::getEntityLoadCount);
+        entityCounter(registry, "fetch", Statistics::getEntityFetchCount);
+        entityCounter(registry, "insert", Statistics::getEntityInsertCount);
+        entityCounter(registry, "update", Statistics::getEntityUpdateCount);
+        entityCounter(registry, "delete", Statistics::getEntityDeleteCount);
+        counter(registry, "hibernate.collections.fetched", "Collections fetched", Statistics::getCollectionFetchCount);
+
+        counter(registry, "hibernate.query.executions", "Queries executed", Statistics::getQueryExecutionCount);
+        TimeGauge.builder("hibernate.query.executions.max", statistics, TimeUnit.MILLISECONDS, Statistics::getQueryExecutionMaxTime)
+                .description("Slowest query since startup")
+                .register(registry);
+        Gauge.builder("hibernate.query.plan.cache.hit.ratio", statistics, HibernateStatisticsMetrics::queryPlanHitRatio)
+                .description("Share of queries whose plan came from the query plan cache")
+                .register(registry);
+    }
+
+
+    // HELPER METHODS
+    private void counter(MeterRegistry registry, String name, String description, ToDoubleFunction<Statistics> count) {
+        FunctionCounter.builder(name, statistics, count)
+                .description(description)
+                .register(registry);
+    }
+
+    private void entityCounter(MeterRegistry registry, String operation, ToDoubleFunction<Statistics> count) {
+        FunctionCounter.builder("hibernate.entities", statistics, count)
+                .description("Entity operations")
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    private static double queryPlanHitRatio(Statistics statistics) {
+        long hits = statistics.getQueryPlanCacheHitCount();
+        long total = hits + statistics.getQueryPlanCacheMissCount();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,66 @@
+package com.bitscoder.onlinebookstore.config;
+
+import com.bitscoder.onlinebookstore.util.TimeOrderedId;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The LegacyBookIdMigration class re-keys the books created before ids became time-ordered.
+ * Legacy ids ("Book" plus 5 random hex characters) cannot collide with new ones, since they are shorter, so the migration
+ * is optional: it only moves old rows off the collision-prone format. The new ids are taken when the migration runs, in
+ * the order of the random legacy ids, so re-keyed books do not end up in the order in which they were created.
+ * It runs at startup when lms.rekeyLegacyBookIds=true, one batch per transaction, and is safe to re-run because
+ * re-keyed rows no longer match.
+ * Links and bookmarks to the old book ids stop working once it has run.
+ * Books that have loans keep their ids, since book_loans.book_id references them.
+ * User ids are left alone: books.user_id references them, and the new format cannot collide with them either.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "lms.rekeyLegacyBookIds", havingValue = "true")
+public class LegacyBookIdMigration implements ApplicationRunner {
+
+    private static final String PREFIX = "Book";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public LegacyBookIdMigration(JdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${lms.rekeyBatchSize:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int idLength = PREFIX.length() + TimeOrderedId.LENGTH;
+        long migrated = 0;
+        List<String> legacyIds;
+        do {
+            legacyIds = jdbcTemplate.queryForList(
+                    "SELECT id FROM books b WHERE length(b.id) <> ? " +
+                            "AND NOT EXISTS (SELECT 1 FROM book_loans l WHERE l.book_id = b.id) ORDER BY b.id LIMIT ?", String.class, idLength, batchSize);
+            List<Object[]> renames = new ArrayList<>(legacyIds.size());
+            for (String legacyId : legacyIds) {
+                renames.add(new Object[]{TimeOrderedId.next(PREFIX), legacyId});
+            }
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate("UPDATE books SET id = ? WHERE id = ?", renames));
+            migrated += legacyIds.size();
+        } while (legacyIds.size() == batchSize);
+        log.info("Re-keyed {} books with legacy ids", migrated);
+    }
+}
@@ -0,0 +1,18 @@
+package com.bitscoder.onlinebookstore.config;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.annotation.*;
+
+/**
+ * Runs the annotated method in a read-only transaction that may be served by a read replica.
+ * Without lms.replicaUrls, or while no replica is within lms.replicaMaxLagMs of the primary, the transaction simply
+ * runs on the primary. Only put it on reads that can show data a moment old: a write made just before may not be
+ * visible yet.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Transactional(readOnly = true)
+public @interface ReadFromReplica {
+}
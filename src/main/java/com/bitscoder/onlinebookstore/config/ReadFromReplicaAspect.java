@@ -0,0 +1,24 @@
+package com.bitscoder.onlinebookstore.config;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+
+/**
+ * The ReadFromReplicaAspect class lets the ReplicaRoutingDataSource send the read-only transaction of a
+ * @ReadFromReplica method to a replica. Other read-only transactions, such as the ones Spring Data opens for each
+ * repository call, stay on the primary, so a read that is followed by a write always sees the latest row.
+ */
+@Aspect
+public class ReadFromReplicaAspect {
+
+    @Around("@annotation(com.bitscoder.onlinebookstore.config.ReadFromReplica)")
+    public Object readFromReplica(ProceedingJoinPoint joinPoint) throws Throwable {
+        boolean previous = ReplicaRoutingDataSource.enterReplicaReads();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            ReplicaRoutingDataSource.exitReplicaReads(previous);
+        }
+    }
+}
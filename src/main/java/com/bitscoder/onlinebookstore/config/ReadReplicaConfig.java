@@ -0,0 +1,80 @@
+package com.bitscoder.onlinebookstore.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ReadReplicaConfig class sets up read replicas when lms.replicaUrls lists one or more JDBC URLs.
+ *
+ * The primary pool is built from the spring.datasource.* properties as before. Each replica gets a pool with the same
+ * settings, under the credentials in lms.replicaUsername and lms.replicaPassword when they are given. The application
+ * uses a LazyConnectionDataSourceProxy over a ReplicaRoutingDataSource, which sends the @ReadFromReplica reads to a
+ * replica that is no more than lms.replicaMaxLagMs behind, and everything else to the primary.
+ * The default lag query is for PostgreSQL streaming replicas: no lag while everything received has been replayed,
+ * otherwise the age of the last replayed transaction.
+ * Blank entries are skipped, so an empty lms.replicaUrls sends every read to the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "lms.replicaUrls")
+public class ReadReplicaConfig {
+
+    static final String POSTGRES_LAG_QUERY = "select case when pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() then 0 "
+            + "else extract(epoch from now() - pg_last_xact_replay_timestamp()) * 1000 end";
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+                                                             @Value("${lms.replicaUrls}") List<String> replicaUrls,
+                                                             @Value("${lms.replicaUsername:}") String username,
+                                                             @Value("${lms.replicaPassword:}") String password,
+                                                             @Value("${lms.replicaLagQuery:" + POSTGRES_LAG_QUERY + "}") String lagQuery,
+                                                             @Value("${lms.replicaMaxLagMs:1000}") long maxLagMs) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            // an empty lms.replicaUrls, or a stray comma, leaves blank entries
+            if (!StringUtils.hasText(url)) {
+                continue;
+            }
+            HikariDataSource replica = new HikariDataSource();
+            primaryDataSource.copyStateTo(replica);
+            replica.setJdbcUrl(url.trim());
+            replica.setPoolName("replica-" + replicas.size());
+            if (StringUtils.hasText(username)) {
+                replica.setUsername(username);
+                replica.setPassword(password);
+            }
+            // a replica that is down must not stop the application from starting; its reads go to the primary
+            replica.setInitializationFailTimeout(-1);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, lagQuery, maxLagMs);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public ReadFromReplicaAspect readFromReplicaAspect() {
+        return new ReadFromReplicaAspect();
+    }
+}
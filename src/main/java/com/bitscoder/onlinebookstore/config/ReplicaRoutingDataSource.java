@@ -0,0 +1,182 @@
+package com.bitscoder.onlinebookstore.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The ReplicaRoutingDataSource class sends the read-only transactions of @ReadFromReplica methods to the read replicas,
+ * taking turns between them, and everything else to the primary.
+ *
+ * Every lms.replicaLagCheckMs each replica runs the lag query, which answers how many milliseconds it is behind the
+ * primary. A replica that is further behind than lms.replicaMaxLagMs, answers null or cannot be reached is skipped
+ * until a later check finds it caught up; with no replica left, or none configured, the reads go to the primary.
+ * Replicas start out skipped until their first check.
+ *
+ * The routing is decided when a connection is taken, so it must be wrapped in a LazyConnectionDataSourceProxy: the
+ * transaction managers take their connection before the transaction is marked read-only, and the proxy only takes
+ * the real one at the first statement.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements MeterBinder, AutoCloseable {
+
+    private static final String PRIMARY = "primary";
+    private static final ThreadLocal<Boolean> REPLICA_READS = ThreadLocal.withInitial(() -> false);
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final String lagQuery;
+    private final long maxLagMs;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources, String lagQuery, long maxLagMs) {
+        this.lagQuery = lagQuery;
+        this.maxLagMs = maxLagMs;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (DataSource dataSource : replicaDataSources) {
+            Replica replica = new Replica("replica-" + replicas.size(), dataSource);
+            replicas.add(replica);
+            targets.put(replica.name, dataSource);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Lets the read-only transactions of the current thread go to a replica, until exitReplicaReads is called with
+     * the returned value.
+     */
+    public static boolean enterReplicaReads() {
+        boolean previous = REPLICA_READS.get();
+        REPLICA_READS.set(true);
+        return previous;
+    }
+
+    public static void exitReplicaReads(boolean previous) {
+        if (previous) {
+            REPLICA_READS.set(true);
+        } else {
+            REPLICA_READS.remove();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${lms.replicaLagCheckMs:1000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            Long lagMs = measureLag(replica);
+            replica.lagMs = lagMs == null ? Double.NaN : lagMs;
+            boolean available = lagMs != null && lagMs <= maxLagMs;
+            if (available != replica.available) {
+                if (available) {
+                    log.info("Read replica {} is {} ms behind, sending reads to it", replica.name, lagMs);
+                } else {
+                    log.warn("Read replica {} is {} behind, sending its reads elsewhere", replica.name,
+                            lagMs == null ? "unknown" : lagMs + " ms");
+                }
+                replica.available = available;
+            }
+        }
+    }
+
+    public int availableReplicas() {
+        int available = 0;
+        for (Replica replica : replicas) {
+            if (replica.available) {
+                available++;
+            }
+        }
+        return available;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Replica replica : replicas) {
+            Gauge.builder("bookstore.replica.lag", replica, r -> r.lagMs)
+                    .description("How far the read replica was behind the primary at the last check")
+                    .baseUnit("milliseconds")
+                    .tag("replica", replica.name)
+                    .register(registry);
+            Gauge.builder("bookstore.replica.available", replica, r -> r.available ? 1 : 0)
+                    .description("Whether the read replica is taking reads")
+                    .tag("replica", replica.name)
+                    .register(registry);
+        }
+    }
+
+    @Override
+    public void close() {
+        // the replica pools are created for this data source alone, a HikariDataSource among them is Closeable too
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                try {
+                    closeable.close();
+                } catch (IOException e) {
+                    log.warn("Could not close read replica {}: {}", replica.name, e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicas.isEmpty() || !REPLICA_READS.get() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.available) {
+                return replica.name;
+            }
+        }
+        return PRIMARY;
+    }
+
+
+    // HELPER METHODS
+    private Long measureLag(Replica replica) {
+        try (Connection connection = replica.dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            if (!resultSet.next()) {
+                return null;
+            }
+            Object lag = resultSet.getObject(1);
+            return lag instanceof Number number ? number.longValue() : null;
+        } catch (SQLException e) {
+            log.debug("Could not measure the lag of read replica {}: {}", replica.name, e.getMessage());
+            return null;
+        }
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean available;
+        private volatile double lagMs = Double.NaN;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.bitscoder.onlinebookstore.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * The SchedulingConfig class turns on the @Scheduled background tasks, such as the flush of write-behind stock.
+ * It is kept off the application class so that test slices, which do not scan configuration classes, never run them
+ * and can call the tasks themselves.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,52 @@
+package com.bitscoder.onlinebookstore.config;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * The SearchIndexInitializer class creates the PostgreSQL trigram indexes used by book search once the schema is in place.
+ * The script only uses IF NOT EXISTS statements, so it is run on every start. If the pg_trgm extension cannot be
+ * created (for example because the database user lacks the privilege) search still works, just without the index,
+ * and a warning is logged.
+ */
+@Component
+@AllArgsConstructor
+@Slf4j
+public class SearchIndexInitializer implements ApplicationRunner {
+
+    private static final String SCRIPT = "db/books-search-indexes.sql";
+
+    private final DataSource dataSource;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!isPostgres()) {
+            log.info("Skipping {}: the database is not PostgreSQL", SCRIPT);
+            return;
+        }
+        try {
+            new ResourceDatabasePopulator(new ClassPathResource(SCRIPT)).execute(dataSource);
+            log.info("Book search indexes are in place");
+        } catch (Exception e) {
+            log.warn("Could not create the book search indexes, substring search will scan the table: {}", e.getMessage());
+        }
+    }
+
+    private boolean isPostgres() {
+        try (Connection connection = dataSource.getConnection()) {
+            return "PostgreSQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            log.warn("Could not determine the database product: {}", e.getMessage());
+            return false;
+        }
+    }
+}
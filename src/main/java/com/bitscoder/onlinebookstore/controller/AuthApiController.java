@@ -0,0 +1,29 @@
+package com.bitscoder.onlinebookstore.controller;
+
+import com.bitscoder.onlinebookstore.dto.ApiResponse;
+import com.bitscoder.onlinebookstore.dto.SignInRequest;
+import com.bitscoder.onlinebookstore.security.services.AuthService;
+import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * The AuthApiController class hands out the JWT that API clients send back as an "Authorization: Bearer" header.
+ * It takes the same email and password form fields as the sign-in page, so the attempts are rate limited the same way.
+ */
+@RestController
+@AllArgsConstructor
+@RequestMapping("/api/auth")
+public class AuthApiController {
+
+    private AuthService authService;
+
+    @PostMapping(value = "/token", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+    public ResponseEntity<ApiResponse<SignInRequest.Response>> issueToken(@ModelAttribute SignInRequest request) {
+        return authService.signIn(request);
+    }
+}
@@ -0,0 +1,126 @@
+package com.bitscoder.onlinebookstore.controller;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.dto.ApiResponse;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.dto.BookSearchResult;
+import com.bitscoder.onlinebookstore.dto.CatalogueStatistics;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.service.BookSearchService;
+import com.bitscoder.onlinebookstore.service.BookService;
+import com.bitscoder.onlinebookstore.service.CatalogueStatisticsService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+
+/**
+ * The BookApiController class exposes the catalogue as JSON under /api/books, for clients that authenticate with an
+ * "Authorization: Bearer" token from /api/auth/token instead of the sign-in page.
+ * Every endpoint answers with the same ApiResponse that the BookService builds for the Thymeleaf pages.
+ * The export endpoint writes the whole catalogue as one JSON array, fetching it one keyset page at a time and writing
+ * each book with a JsonGenerator straight to the response, so no more than one page is held in memory.
+ * The statistics endpoint answers with the titles and copies of every genre from the CatalogueStatisticsService.
+ */
+@RestController
+@RequestMapping("/api/books")
+@AllArgsConstructor
+@Slf4j
+public class BookApiController {
+
+    private static final int EXPORT_PAGE_SIZE = 100;
+
+    private final BookService bookService;
+    private final BookSearchService bookSearchService;
+    private final CatalogueStatisticsService catalogueStatisticsService;
+    private final ObjectMapper objectMapper;
+
+    @GetMapping
+    public ResponseEntity<ApiResponse<BookDto.Page>> getBooks(@RequestParam(required = false) String after,
+                                                              @RequestParam(defaultValue = "20") int size,
+                                                              @AuthenticationPrincipal UserDetailsImpl currentUser) {
+        return bookService.getAllBooks(after, size, currentUser);
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void exportBooks(HttpServletResponse response, @AuthenticationPrincipal UserDetailsImpl currentUser) throws IOException {
+        log.info("Exporting the catalogue for user: {}", currentUser.getUsername());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        long exported = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            String after = null;
+            BookDto.Page page;
+            do {
+                page = bookService.getAllBooks(after, EXPORT_PAGE_SIZE, currentUser).getBody().getData();
+                for (BookDto.Response book : page.getBooks()) {
+                    generator.writeObject(book);
+                }
+                // hand each page to the container, which can send it while the next one is read
+                generator.flush();
+                exported += page.getBooks().size();
+                after = page.getNextCursor();
+            } while (page.isHasNext());
+            generator.writeEndArray();
+        }
+        log.info("Exported {} books", exported);
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<ApiResponse<BookSearchResult>> searchBooks(@RequestParam(name = "q", required = false) String query,
+                                                                     @RequestParam(required = false) Genre genre,
+                                                                     @AuthenticationPrincipal UserDetailsImpl currentUser) {
+        if (bookSearchService.isReady()) {
+            return bookSearchService.searchCatalogue(query, genre, currentUser);
+        }
+        // the search index is still being built, so use the indexed database search meanwhile, without facets
+        ApiResponse<List<BookDto.Response>> found = bookService.searchBooks(query, genre, currentUser).getBody();
+        List<BookDto.Response> books = found.getData();
+        return ResponseEntity.ok(new ApiResponse<>(found.getRequestTime(), found.getReferenceId(), found.isStatus(),
+                found.getMessage(), new BookSearchResult(books, books.size(), null)));
+    }
+
+    @GetMapping("/statistics")
+    public ResponseEntity<ApiResponse<CatalogueStatistics>> getStatistics(@AuthenticationPrincipal UserDetailsImpl currentUser) {
+        return catalogueStatisticsService.getStatistics(currentUser);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ApiResponse<BookDto.Response>> getBook(@PathVariable String id,
+                                                                 @AuthenticationPrincipal UserDetailsImpl currentUser) {
+        return bookService.getBookById(id, currentUser);
+    }
+
+    @PostMapping
+    public ResponseEntity<ApiResponse<BookDto.Response>> addBook(@RequestBody BookDto bookDto,
+                                                                 @AuthenticationPrincipal UserDetailsImpl currentUser) {
+        ApiResponse<BookDto.Response> created = bookService.addNewBookToStore(bookDto, currentUser).getBody();
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{id}")
+                .buildAndExpand(created.getData().getId())
+                .toUri();
+        return ResponseEntity.created(location).body(created);
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<ApiResponse<BookDto.Response>> updateBook(@PathVariable String id, @RequestBody BookDto bookDto,
+                                                                    @AuthenticationPrincipal UserDetailsImpl currentUser) {
+        return bookService.updateBook(id, bookDto, currentUser);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<ApiResponse<BookDto.Response>> removeBook(@PathVariable String id,
+                                                                    @AuthenticationPrincipal UserDetailsImpl currentUser) {
+        return bookService.removeBook(id, currentUser);
+    }
+}
@@ -1,35 +1,84 @@
 package com.bitscoder.onlinebookstore.controller;
 
+import com.bitscoder.onlinebookstore.constant.Genre;
 import com.bitscoder.onlinebookstore.dto.ApiResponse;
 import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.dto.BookImportReport;
+import com.bitscoder.onlinebookstore.dto.BookSearchResult;
+import com.bitscoder.onlinebookstore.exception.BadRequestException;
+import com.bitscoder.onlinebookstore.exception.ConflictException;
+import com.bitscoder.onlinebookstore.exception.ResourceNotFoundException;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.service.BookImportService;
+import com.bitscoder.onlinebookstore.service.BookLoanService;
+import com.bitscoder.onlinebookstore.service.BookSearchService;
 import com.bitscoder.onlinebookstore.service.BookService;
+import com.bitscoder.onlinebookstore.service.CatalogueStatisticsService;
+import com.bitscoder.onlinebookstore.service.CatalogueVersionService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.security.web.csrf.CsrfTokenRepository;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+import org.springframework.web.servlet.support.RequestContextUtils;
 
-import java.security.Principal;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
 
+/**
+ * The BookController class serves the book pages under /app.
+ * The catalogue pages, the book page and the title suggestions carry a weak ETag built from the version stamps of the
+ * CatalogueVersionService and the current user. A request whose If-None-Match still matches is answered with
+ * 304 Not Modified before any book is read or any template is rendered. The book lists also hold the Remove and Borrow
+ * forms, whose CSRF token is the one of the XSRF-TOKEN cookie, so their tag includes a digest of that token: once the
+ * cookie holds a new token, for example after the browser was restarted, a stored copy is no longer used.
+ * The /books/all page streams the whole catalogue through a ChunkedBookRows instead of putting it into the model.
+ * The user page shows the shelf statistics of the CatalogueStatisticsService, which are read from memory.
+ */
 @Controller
 @RequestMapping("/app")
 @AllArgsConstructor
 @Slf4j
 public class BookController {
 
+    private static final int FLASHED_IMPORT_ERRORS = 10;
+    private static final int STREAMED_PAGE_SIZE = 100;
+
     private final BookService bookService;
+    private final BookImportService bookImportService;
+    private final BookSearchService bookSearchService;
+    private final BookLoanService bookLoanService;
+    private final CatalogueVersionService catalogueVersionService;
+    private final CatalogueStatisticsService catalogueStatisticsService;
+    private final CsrfTokenRepository csrfTokenRepository;
 
     @PostMapping("/add")
-    public String addNewBookToStore(@ModelAttribute BookDto bookDto, RedirectAttributes redirectAttributes, Principal principal) {
-        ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.addNewBookToStore(bookDto, principal);
+    public String addNewBookToStore(@ModelAttribute BookDto bookDto, RedirectAttributes redirectAttributes, @AuthenticationPrincipal UserDetailsImpl currentUser) {
+        ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.addNewBookToStore(bookDto, currentUser);
         if (response.getStatusCode() == HttpStatus.OK) {
             // Modify the success message
             String successMessage = "Book with Title " + bookDto.getTitle() + "inserted successfully to " + bookDto.getGenre()
-                    + " shelve by User " + principal.getName();
+                    + " shelve by User " + currentUser.getUsername();
 
             redirectAttributes.addFlashAttribute("book", response.getBody().getData());
             redirectAttributes.addFlashAttribute("successMessage", successMessage);
@@ -41,10 +90,42 @@ public class BookController {
         }
     }
 
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public String importBooks(@RequestParam("file") MultipartFile file, RedirectAttributes redirectAttributes,
+                              @AuthenticationPrincipal UserDetailsImpl currentUser) throws IOException {
+        log.info("Received bulk import of file: {}", file.getOriginalFilename());
+        BookImportService.Format format = importFormatOf(file.getOriginalFilename(), file.getContentType());
+        try (InputStream upload = file.getInputStream()) {
+            BookImportReport report = bookImportService.importBooks(upload, format, currentUser).getBody().getData();
+            redirectAttributes.addFlashAttribute("successMessage", "Imported " + report.getImported() + " of " + report.getTotalRows() + " books");
+            if (report.getFailed() > 0) {
+                // flash attributes travel in a cookie, which holds a few errors but not the whole report
+                List<BookImportReport.RowError> errors = report.getErrors();
+                redirectAttributes.addFlashAttribute("importErrors", errors.subList(0, Math.min(errors.size(), FLASHED_IMPORT_ERRORS)));
+            }
+        }
+        return "redirect:/app/books";
+    }
+
+    /**
+     * Streams the request body straight into the importer, for clients that post text/csv or application/x-ndjson
+     * instead of a multipart form.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "application/x-ndjson"})
+    @ResponseBody
+    public ResponseEntity<ApiResponse<BookImportReport>> importBooksFromBody(HttpServletRequest request,
+                                                                             @AuthenticationPrincipal UserDetailsImpl currentUser) throws IOException {
+        log.info("Received streamed bulk import of type: {}", request.getContentType());
+        return bookImportService.importBooks(request.getInputStream(), importFormatOf(null, request.getContentType()), currentUser);
+    }
+
     @GetMapping("/bookDetails")
-    public String showBookDetails(@ModelAttribute("book") BookDto.Response book, Model model) {
+    public String showBookDetails(Model model) {
         log.info("Received request to show book details page");
-        model.addAttribute("book", book);
+        // the book comes as a flash attribute, read back from its cookie as a map of the book's properties
+        if (!model.containsAttribute("book")) {
+            model.addAttribute("book", new BookDto.Response());
+        }
         return "bookDetail";
     }
 
@@ -56,17 +137,27 @@ public class BookController {
     }
 
     @GetMapping("/userPage")
-    public String showUserPage() {
+    public String showUserPage(Model model) {
         log.info("Received request to show user page");
+        model.addAttribute("statistics", catalogueStatisticsService.statistics());
         return "userPage";
     }
 
     @GetMapping("/books")
-    public String showBooksPage(Model model, Principal principal) {
+    public String showBooksPage(@RequestParam(required = false) String after,
+                                @RequestParam(defaultValue = "20") int size,
+                                Model model, @AuthenticationPrincipal UserDetailsImpl currentUser, ServletWebRequest webRequest) {
         log.info("Received request to show lists of book page");
-        ResponseEntity<ApiResponse<List<BookDto.Response>>> response = bookService.getAllBooks(principal);
+        if (formPageNotModified(webRequest, catalogueVersionService.catalogueTag(), currentUser)) {
+            return null;
+        }
+        ResponseEntity<ApiResponse<BookDto.Page>> response = bookService.getAllBooks(after, size, currentUser);
         if (response.getStatusCode() == HttpStatus.OK) {
-            model.addAttribute("books", response.getBody().getData());
+            BookDto.Page page = response.getBody().getData();
+            model.addAttribute("books", page.getBooks());
+            model.addAttribute("nextCursor", page.getNextCursor());
+            model.addAttribute("hasNext", page.isHasNext());
+            model.addAttribute("size", size);
             return "books";
         } else {
             // handle error
@@ -75,11 +166,73 @@ public class BookController {
         }
     }
 
+    /**
+     * Renders the whole catalogue on one page, streamed: the rows come from a ChunkedBookRows, so the page is sent in
+     * chunks as the books are read, one keyset page at a time.
+     */
+    @GetMapping("/books/all")
+    public String showAllBooksPage(Model model, @AuthenticationPrincipal UserDetailsImpl currentUser, ServletWebRequest webRequest) {
+        log.info("Received request to stream the whole catalogue");
+        if (formPageNotModified(webRequest, catalogueVersionService.catalogueTag(), currentUser)) {
+            return null;
+        }
+        model.addAttribute("books", new ChunkedBookRows(
+                after -> bookService.getAllBooks(after, STREAMED_PAGE_SIZE, currentUser).getBody().getData(),
+                webRequest.getResponse()));
+        model.addAttribute("streamed", true);
+        return "books";
+    }
+
+    @GetMapping("/books/search")
+    public String searchBooks(@RequestParam(name = "q", required = false) String query,
+                              @RequestParam(required = false) Genre genre,
+                              Model model, @AuthenticationPrincipal UserDetailsImpl currentUser, ServletWebRequest webRequest) {
+        log.info("Received request to search books for: {}", query);
+        // the results look different once the search index is ready, so that is part of the tag
+        String versionTag = catalogueVersionService.catalogueTag() + (bookSearchService.isReady() ? "-index" : "-db");
+        if (formPageNotModified(webRequest, versionTag, currentUser)) {
+            return null;
+        }
+        model.addAttribute("query", query);
+        model.addAttribute("genre", genre);
+        try {
+            if (bookSearchService.isReady()) {
+                BookSearchResult result = bookSearchService.searchCatalogue(query, genre, currentUser).getBody().getData();
+                model.addAttribute("books", result.getBooks());
+                model.addAttribute("totalMatches", result.getTotalMatches());
+                model.addAttribute("genreFacets", result.getGenreFacets());
+            } else {
+                // the search index is still being built, so use the indexed database search meanwhile
+                ResponseEntity<ApiResponse<List<BookDto.Response>>> response = bookService.searchBooks(query, genre, currentUser);
+                model.addAttribute("books", response.getBody().getData());
+            }
+        } catch (BadRequestException e) {
+            model.addAttribute("books", List.of());
+            model.addAttribute("errorMessage", e.getMessage());
+        }
+        return "books";
+    }
+
+    @GetMapping("/books/suggest")
+    @ResponseBody
+    public ResponseEntity<ApiResponse<List<String>>> suggestTitles(@RequestParam(name = "q", required = false) String prefix,
+                                                                   @AuthenticationPrincipal UserDetailsImpl currentUser,
+                                                                   ServletWebRequest webRequest) {
+        if (notModified(webRequest, catalogueVersionService.catalogueTag(), currentUser)) {
+            return null;
+        }
+        return bookSearchService.suggestTitles(prefix, currentUser);
+    }
+
     @GetMapping("/book/{id}")
-    public String showBookPage(@PathVariable String id, Model model, Principal principal, RedirectAttributes redirectAttributes) {
+    public String showBookPage(@PathVariable String id, Model model, @AuthenticationPrincipal UserDetailsImpl currentUser, RedirectAttributes redirectAttributes,
+                               ServletWebRequest webRequest) {
         log.info("Received request to show book by id page");
+        if (notModified(webRequest, catalogueVersionService.bookTag(id), currentUser)) {
+            return null;
+        }
         try {
-            ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.getBookById(id, principal);
+            ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.getBookById(id, currentUser);
             model.addAttribute("book", response.getBody().getData());
             return "book";
         } catch (Exception e) {
@@ -89,10 +242,10 @@ public class BookController {
     }
 
     @GetMapping("/updateBook/{id}")
-    public String showUpdateBookPage(@PathVariable String id, Model model, Principal principal, RedirectAttributes redirectAttributes) {
+    public String showUpdateBookPage(@PathVariable String id, Model model, @AuthenticationPrincipal UserDetailsImpl currentUser, RedirectAttributes redirectAttributes) {
         log.info("Received request to show update book page");
         try {
-            ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.getBookById(id, principal);
+            ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.getBookById(id, currentUser);
             model.addAttribute("bookDto", new BookDto());
             model.addAttribute("book", response.getBody().getData());
             return "updateBook";
@@ -103,9 +256,16 @@ public class BookController {
     }
 
     @PostMapping("/updateBook/{id}")
-    public String updateBook(@PathVariable String id, @ModelAttribute BookDto bookRequest, RedirectAttributes redirectAttributes, Principal principal) {
+    public String updateBook(@PathVariable String id, @ModelAttribute BookDto bookRequest, RedirectAttributes redirectAttributes, @AuthenticationPrincipal UserDetailsImpl currentUser) {
         log.info("Updating book with id: {}", id);
-        ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.updateBook(id, bookRequest, principal);
+        ResponseEntity<ApiResponse<BookDto.Response>> response;
+        try {
+            response = bookService.updateBook(id, bookRequest, currentUser);
+        } catch (ConflictException e) {
+            // the form is shown again with the book as it is now
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+            return "redirect:/app/updateBook/" + id;
+        }
         if (response.getStatusCode() == HttpStatus.OK) {
             redirectAttributes.addFlashAttribute("book", response.getBody().getData());
             redirectAttributes.addFlashAttribute("successMessage", "Book details updated successfully");
@@ -118,12 +278,11 @@ public class BookController {
     }
 
     @PostMapping("/removeBook/{id}")
-    public String removeBook(@PathVariable String id, RedirectAttributes redirectAttributes, Principal principal) {
+    public String removeBook(@PathVariable String id, RedirectAttributes redirectAttributes, @AuthenticationPrincipal UserDetailsImpl currentUser) {
         log.info("Removing book with id: {}", id);
-        ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.getBookById(id, principal);
+        ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.removeBook(id, currentUser);
         if (response.getStatusCode() == HttpStatus.OK) {
             String bookTitle = response.getBody().getData().getTitle();
-            bookService.removeBook(id, principal);
             redirectAttributes.addFlashAttribute("successMessage", "Book with title '" + bookTitle + "' has been successfully removed from the library");
             return "redirect:/app/books";
         } else {
@@ -132,4 +291,82 @@ public class BookController {
             return "redirect:/app/removeBook/" + id;
         }
     }
+
+    @PostMapping("/borrowBook/{id}")
+    public String borrowBook(@PathVariable String id, RedirectAttributes redirectAttributes, @AuthenticationPrincipal UserDetailsImpl currentUser) {
+        log.info("Borrowing book with id: {}", id);
+        try {
+            ResponseEntity<ApiResponse<BookDto.Response>> response = bookLoanService.borrowBook(id, currentUser);
+            redirectAttributes.addFlashAttribute("successMessage", response.getBody().getMessage());
+            return "redirect:/app/loans";
+        } catch (BadRequestException | ResourceNotFoundException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", "An error occurred: " + e.getMessage());
+            return "redirect:/app/books";
+        }
+    }
+
+    @PostMapping("/returnBook/{id}")
+    public String returnBook(@PathVariable String id, RedirectAttributes redirectAttributes, @AuthenticationPrincipal UserDetailsImpl currentUser) {
+        log.info("Returning book with id: {}", id);
+        try {
+            ResponseEntity<ApiResponse<BookDto.Response>> response = bookLoanService.returnBook(id, currentUser);
+            redirectAttributes.addFlashAttribute("successMessage", response.getBody().getMessage());
+        } catch (BadRequestException | ResourceNotFoundException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", "An error occurred: " + e.getMessage());
+        }
+        return "redirect:/app/loans";
+    }
+
+    @GetMapping("/loans")
+    public String showLoansPage(Model model, @AuthenticationPrincipal UserDetailsImpl currentUser) {
+        log.info("Received request to show borrowed books page");
+        model.addAttribute("books", bookLoanService.getBorrowedBooks(currentUser).getBody().getData());
+        return "loans";
+    }
+
+
+    // HELPER METHODS
+    // the tag is taken before the books are read, so a page is never stored under a tag newer than its content
+    private boolean notModified(ServletWebRequest webRequest, String versionTag, UserDetailsImpl currentUser) {
+        HttpServletRequest request = webRequest.getRequest();
+        if (!CollectionUtils.isEmpty(RequestContextUtils.getInputFlashMap(request))) {
+            // a page showing a flash message is neither stored nor answered from a stored copy
+            return false;
+        }
+        HttpServletResponse response = webRequest.getResponse();
+        if (response != null) {
+            // replaces the no-store default of Spring Security, so the browser keeps the page and revalidates it
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        }
+        return webRequest.checkNotModified("W/\"" + versionTag + "-" + currentUser.getId() + "\"");
+    }
+
+    // for pages with POST forms: a stored copy is only reused while the XSRF-TOKEN cookie still holds the token it rendered;
+    // without the cookie a new token is issued with this response, so the page is always rendered
+    private boolean formPageNotModified(ServletWebRequest webRequest, String versionTag, UserDetailsImpl currentUser) {
+        CsrfToken csrfToken = csrfTokenRepository.loadToken(webRequest.getRequest());
+        if (csrfToken == null) {
+            return false;
+        }
+        return notModified(webRequest, versionTag + "-" + digest(csrfToken.getToken()), currentUser);
+    }
+
+    // the tag must change with the token but not give it away
+    private static String digest(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private BookImportService.Format importFormatOf(String fileName, String contentType) {
+        String name = fileName == null ? "" : fileName.toLowerCase(Locale.ROOT);
+        String type = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson") || type.contains("ndjson") || type.contains("json")) {
+            return BookImportService.Format.JSON_LINES;
+        }
+        return BookImportService.Format.CSV;
+    }
 }
\ No newline at end of file
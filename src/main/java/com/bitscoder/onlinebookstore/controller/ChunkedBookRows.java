@@ -0,0 +1,82 @@
+package com.bitscoder.onlinebookstore.controller;
+
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * The ChunkedBookRows class is the book list of the streamed catalogue page.
+ * It reads the catalogue one keyset page at a time while the template iterates over it, and before reading a page it
+ * flushes what has been rendered so far to the client. The browser starts painting the page and its first rows while
+ * the next ones are read, and no more than one page of books is held in memory, whatever the size of the catalogue.
+ * Each page is read with its own query, so no connection or transaction is held while the client receives the rows.
+ * It can be iterated once.
+ */
+public class ChunkedBookRows implements Iterable<BookDto.Response> {
+
+    private final Function<String, BookDto.Page> pageReader;
+    private final HttpServletResponse response;
+    private boolean iterated;
+
+    /**
+     * @param pageReader reads the page of books after the given cursor (null for the first page)
+     * @param response   the response the rows are rendered into, flushed before every page is read; null to not flush
+     */
+    public ChunkedBookRows(Function<String, BookDto.Page> pageReader, HttpServletResponse response) {
+        this.pageReader = pageReader;
+        this.response = response;
+    }
+
+    @Override
+    public Iterator<BookDto.Response> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("The book rows have already been streamed");
+        }
+        iterated = true;
+        return new Iterator<>() {
+            private Iterator<BookDto.Response> page = Collections.emptyIterator();
+            private String after;
+            private boolean morePages = true;
+
+            @Override
+            public boolean hasNext() {
+                while (!page.hasNext() && morePages) {
+                    flush();
+                    BookDto.Page next = pageReader.apply(after);
+                    page = next.getBooks().iterator();
+                    after = next.getNextCursor();
+                    morePages = next.isHasNext();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public BookDto.Response next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+    }
+
+
+    // HELPER METHODS
+    private void flush() {
+        if (response == null) {
+            return;
+        }
+        try {
+            response.flushBuffer();
+        } catch (IOException e) {
+            // the client went away; stop reading books for it
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -3,7 +3,9 @@ package com.bitscoder.onlinebookstore.controller;
 import com.bitscoder.onlinebookstore.dto.ApiResponse;
 import com.bitscoder.onlinebookstore.dto.SignInRequest;
 import com.bitscoder.onlinebookstore.dto.UserRegistrationRequest;
+import com.bitscoder.onlinebookstore.exception.ServiceBusyException;
 import com.bitscoder.onlinebookstore.security.services.AuthService;
+import com.bitscoder.onlinebookstore.service.CatalogueStatisticsService;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -27,6 +29,7 @@ import java.util.Objects;
 public class UserController {
 
     private AuthService authService;
+    private CatalogueStatisticsService catalogueStatisticsService;
 
     @GetMapping("/register")
     public String showRegistrationForm(Model model) {
@@ -43,6 +46,9 @@ public class UserController {
         } catch (ResponseStatusException e) {
             redirectAttributes.addFlashAttribute("error", e.getReason());
             return "redirect:/auth/register";
+        } catch (ServiceBusyException e) {
+            redirectAttributes.addFlashAttribute("error", e.getMessage());
+            return "redirect:/auth/register";
         }
     }
 
@@ -53,12 +59,15 @@ public class UserController {
     }
 
     @PostMapping("/login")
-    public String signIn(@ModelAttribute SignInRequest request, HttpServletResponse response, RedirectAttributes redirectAttributes) {
+    public String signIn(@ModelAttribute SignInRequest request, HttpServletResponse response, Model model,
+                         RedirectAttributes redirectAttributes) {
         try {
             ResponseEntity<ApiResponse<SignInRequest.Response>> apiResponse = authService.signIn(request);
             Cookie cookie = new Cookie("token", Objects.requireNonNull(apiResponse.getBody()).getData().getToken());
             cookie.setHttpOnly(true);
+            cookie.setPath("/");
             response.addCookie(cookie);
+            model.addAttribute("statistics", catalogueStatisticsService.statistics());
             return "userPage";
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", e.getMessage());
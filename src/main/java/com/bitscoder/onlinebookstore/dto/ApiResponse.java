@@ -3,26 +3,31 @@ package com.bitscoder.onlinebookstore.dto;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.Builder;
 import lombok.Data;
-import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 import java.util.UUID;
 
 /**
  * This is the class that wraps the response anytime a request is made
+ * The request time and reference id are only generated by the no-args constructor; the all-args constructor, used for
+ * every response, takes them from the caller, so they are not generated twice.
  * @param <T>
  */
 @Data
 @Builder
-@NoArgsConstructor
 public class ApiResponse<T> {
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
-    private LocalDateTime requestTime = LocalDateTime.now();
-    private String referenceId = UUID.randomUUID().toString();
+    private LocalDateTime requestTime;
+    private String referenceId;
     private boolean status;
     private String message;
     private T data;
 
+    public ApiResponse() {
+        this.requestTime = LocalDateTime.now();
+        this.referenceId = UUID.randomUUID().toString();
+    }
+
     public ApiResponse(LocalDateTime requestTime, String referenceId, boolean status, String message, T data) {
         this.requestTime = requestTime;
         this.referenceId = referenceId;
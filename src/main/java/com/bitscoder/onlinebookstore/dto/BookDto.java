@@ -5,6 +5,7 @@ import lombok.*;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * This is the book dto request and response class
@@ -22,6 +23,8 @@ public class BookDto {
     private Genre genre;
     private long quantity;
     private LocalDate publicationYear;
+    // on an update, the version of the book the edit was based on (BookDto.Response.version); ignored when adding
+    private Long version;
 
     @Data
     @AllArgsConstructor
@@ -36,6 +39,20 @@ public class BookDto {
         private LocalDate publicationYear;
         private long quantity;
         private LocalDateTime borrowedAt;
+        // the book row's optimistic lock version, which increases with every change to the book or its stock
+        private long version;
     }
-}
 
+    /**
+     * A single keyset page of books. nextCursor is the id to pass as the "after" cursor to fetch the following page.
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Page {
+
+        private List<Response> books;
+        private String nextCursor;
+        private boolean hasNext;
+    }
+}
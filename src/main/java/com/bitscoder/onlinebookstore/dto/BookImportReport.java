@@ -0,0 +1,32 @@
+package com.bitscoder.onlinebookstore.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This is the summary returned after a bulk book import.
+ * Only the first errors are kept, so the report stays small however many rows fail; errorsTruncated tells when some were dropped.
+ */
+@Data
+@NoArgsConstructor
+public class BookImportReport {
+
+    private long totalRows;
+    private long imported;
+    private long failed;
+    private List<RowError> errors = new ArrayList<>();
+    private boolean errorsTruncated;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class RowError {
+
+        private long line;
+        private String message;
+    }
+}
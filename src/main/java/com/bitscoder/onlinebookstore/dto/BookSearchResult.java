@@ -0,0 +1,23 @@
+package com.bitscoder.onlinebookstore.dto;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This is the result of a catalogue search: the best ranked books, how many books matched in total,
+ * and how many of the matches fall in each genre (counted before any genre filter, so they can be offered as facets).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookSearchResult {
+
+    private List<BookDto.Response> books;
+    private long totalMatches;
+    private Map<Genre, Long> genreFacets;
+}
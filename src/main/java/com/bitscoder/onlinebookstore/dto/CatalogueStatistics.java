@@ -0,0 +1,33 @@
+package com.bitscoder.onlinebookstore.dto;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * These are the statistics of the catalogue: for every genre (shelf) the number of titles and of copies in stock,
+ * the totals over all shelves, and when the counts were last reconciled with the database.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CatalogueStatistics {
+
+    private Map<Genre, Shelf> shelves;
+    private long titles;
+    private long copies;
+    private LocalDateTime reconciledAt;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Shelf {
+
+        private long titles;
+        private long copies;
+    }
+}
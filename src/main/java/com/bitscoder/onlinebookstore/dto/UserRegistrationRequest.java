@@ -25,15 +25,20 @@ public class UserRegistrationRequest {
     @Getter
     @Setter
     @Builder
-    @NoArgsConstructor
     public static class Response<T> {
         @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
-        private LocalDateTime requestTime = LocalDateTime.now();
-        private String referenceId = UUID.randomUUID().toString();
+        private LocalDateTime requestTime;
+        private String referenceId;
         private boolean status;
         private String message;
         private T data;
 
+        // like ApiResponse, generates the time and id only when the caller does not pass them
+        public Response() {
+            this.requestTime = LocalDateTime.now();
+            this.referenceId = UUID.randomUUID().toString();
+        }
+
         public Response(LocalDateTime requestTime, String referenceId,
                         boolean status, String message, T data) {
             this.requestTime = requestTime;
@@ -1,25 +1,38 @@
 package com.bitscoder.onlinebookstore.models;
 
 import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.util.TimeOrderedId;
 import jakarta.persistence.*;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.ColumnDefault;
+import org.springframework.data.domain.Persistable;
 
 import java.time.LocalDate;
-import java.util.UUID;
 
 /**
- * The entity class for the book object
+ * The entity class for the book object.
+ * The b-tree indexes cover the exact lookups (isbn, genre, author, title); the trigram indexes used for
+ * substring search cannot be declared here and are created from db/books-search-indexes.sql.
+ * Ids are time-ordered (see TimeOrderedId) and assigned on construction. The entity implements Persistable so that
+ * saving a new book is a plain insert; otherwise Spring Data would treat the assigned id as an existing row and
+ * select it first to merge.
+ * The version column guards against lost updates: stock changes made with BookRepository.takeCopy/returnCopy
+ * bump it, so an edit based on an older read of the book fails instead of overwriting them.
  */
-@AllArgsConstructor
 @Getter
 @Setter
 @ToString
 @Entity
-@Table(name = "books")
-public class Book {
+@Table(name = "books", indexes = {
+        @Index(name = "idx_books_isbn", columnList = "isbn"),
+        @Index(name = "idx_books_genre", columnList = "genre"),
+        @Index(name = "idx_books_author", columnList = "author"),
+        @Index(name = "idx_books_title", columnList = "title")
+})
+public class Book implements Persistable<String> {
 
     @Id
     private String id;
@@ -30,19 +43,47 @@ public class Book {
     private Genre genre;
     private LocalDate publicationYear;
     private long quantity;
+    @Version
+    @ColumnDefault("0")
+    private long version;
 
-    @ManyToOne
+    // only the owner's id is needed in the common case, so the user row is loaded on first access, never with the book
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
+    @ToString.Exclude
     private User user;
 
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private boolean newBook = true;
+
 
     public Book() {
-        this.setId(generateCustomUUID());
+        this.setId(TimeOrderedId.next("Book"));
+    }
+
+    public Book(String id, String title, String author, String isbn, Genre genre, LocalDate publicationYear, long quantity, User user) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.isbn = isbn;
+        this.genre = genre;
+        this.publicationYear = publicationYear;
+        this.quantity = quantity;
+        this.user = user;
     }
 
+    @Override
+    public boolean isNew() {
+        return newBook;
+    }
 
-    private String generateCustomUUID() {
-        return "Book"+ UUID.randomUUID().toString().substring(0, 5);
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newBook = false;
     }
 }
 
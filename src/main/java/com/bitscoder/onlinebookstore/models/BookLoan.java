@@ -0,0 +1,65 @@
+package com.bitscoder.onlinebookstore.models;
+
+import com.bitscoder.onlinebookstore.util.TimeOrderedId;
+import jakarta.persistence.*;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * The entity class for one copy of a book borrowed by a user.
+ * A loan is open until returnedAt is set. Like Book it has a time-ordered id assigned on construction and implements
+ * Persistable, so saving a new loan is a plain insert.
+ */
+@Getter
+@Setter
+@ToString
+@Entity
+@Table(name = "book_loans", indexes = {
+        @Index(name = "idx_book_loans_user", columnList = "user_id, returned_at"),
+        @Index(name = "idx_book_loans_book", columnList = "book_id")
+})
+public class BookLoan implements Persistable<String> {
+
+    @Id
+    private String id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "book_id")
+    @ToString.Exclude
+    private Book book;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id")
+    @ToString.Exclude
+    private User user;
+
+    private LocalDateTime borrowedAt;
+    private LocalDateTime returnedAt;
+
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    private boolean newLoan = true;
+
+
+    public BookLoan() {
+        this.setId(TimeOrderedId.next("Loan"));
+    }
+
+    @Override
+    public boolean isNew() {
+        return newLoan;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newLoan = false;
+    }
+}
@@ -0,0 +1,27 @@
+package com.bitscoder.onlinebookstore.models;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * The entity class for the stock journal segment last written to the books table.
+ * It is inserted in the same transaction as the segment's stock changes, so a segment that was already applied before
+ * a crash is recognised on restart and not applied twice. Only the latest segment is kept.
+ */
+@Setter
+@Getter
+@Entity
+@NoArgsConstructor
+@Table(name = "stock_journal_flushes")
+public class StockJournalFlush {
+
+    @Id
+    private String id;
+    private LocalDateTime flushedAt;
+}
@@ -1,26 +1,37 @@
 package com.bitscoder.onlinebookstore.models;
 
 import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.util.TimeOrderedId;
 import jakarta.persistence.*;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import lombok.experimental.SuperBuilder;
 import org.hibernate.annotations.DynamicUpdate;
+import org.springframework.data.domain.Persistable;
 
 import java.io.Serializable;
 import java.util.List;
-import java.util.UUID;
 
+/**
+ * The entity class for a user of the bookstore.
+ * The unique constraints on name and email are named, so a registration that breaks one can be told apart.
+ * Like Book, a user gets a time-ordered id on construction and implements Persistable, so registering is a plain insert.
+ */
 @Data
 @AllArgsConstructor
 @Entity
 @Table(name = "users",
         uniqueConstraints = {
-                @UniqueConstraint(columnNames = "name"),
-                @UniqueConstraint(columnNames = "email")
+                @UniqueConstraint(name = "uk_users_name", columnNames = "name"),
+                @UniqueConstraint(name = "uk_users_email", columnNames = "email")
         })
 @Inheritance(strategy = InheritanceType.JOINED)
-public class User implements Serializable {
+public class User implements Serializable, Persistable<String> {
 
     @Id
     private String id;
@@ -29,16 +40,33 @@ public class User implements Serializable {
     private String password;
     @Enumerated(EnumType.STRING)
     private Roles roles;
+    // never part of toString/equals/hashCode: that would load every book of the user, and Book points back here
     @OneToMany(mappedBy = "user")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private List<Book> books;
 
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private boolean newUser = true;
+
 
     public User() {
         super();
-        this.setId(generateCustomUUID());
+        this.setId(TimeOrderedId.next("User"));
+    }
+
+    @Override
+    public boolean isNew() {
+        return newUser;
     }
 
-    private String generateCustomUUID() {
-        return "User"+ UUID.randomUUID().toString().substring(0, 5);
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.newUser = false;
     }
 }
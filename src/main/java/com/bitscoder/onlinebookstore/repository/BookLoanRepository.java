@@ -0,0 +1,45 @@
+package com.bitscoder.onlinebookstore.repository;
+
+import com.bitscoder.onlinebookstore.models.BookLoan;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ *  This interface enables CRUD operations to be performed on BookLoan entities identified by a String ID
+ */
+public interface BookLoanRepository extends JpaRepository<BookLoan, String> {
+
+    /**
+     * Ids of the open loans of one book by one user, oldest first.
+     */
+    @Query("select l.id from BookLoan l where l.book.id = :bookId and l.user.id = :userId and l.returnedAt is null " +
+            "order by l.borrowedAt")
+    List<String> findOpenLoanIds(@Param("bookId") String bookId, @Param("userId") String userId, Pageable pageable);
+
+    /**
+     * Closes the loan if it is still open. Returns 0 when it was already returned, so a loan can only be returned once.
+     */
+    @Modifying
+    @Query("update BookLoan l set l.returnedAt = :returnedAt where l.id = :id and l.returnedAt is null")
+    int markReturned(@Param("id") String id, @Param("returnedAt") LocalDateTime returnedAt);
+
+    /**
+     * The books a user currently has on loan, with the columns BookDto.Response shows, in one select.
+     */
+    @Query("select b.id as id, b.title as title, b.author as author, b.isbn as isbn, b.genre as genre, " +
+            "b.publicationYear as publicationYear, b.quantity as quantity, b.version as version, l.borrowedAt as borrowedAt " +
+            "from BookLoan l join l.book b where l.user.id = :userId and l.returnedAt is null order by l.borrowedAt")
+    List<BookLoanView> findOpenLoansOfUser(@Param("userId") String userId);
+
+    boolean existsByBookIdAndReturnedAtIsNull(String bookId);
+
+    @Modifying
+    @Query("delete from BookLoan l where l.book.id = :bookId and l.returnedAt is not null")
+    int deleteReturnedLoansOfBook(@Param("bookId") String bookId);
+}
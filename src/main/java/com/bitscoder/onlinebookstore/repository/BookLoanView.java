@@ -0,0 +1,11 @@
+package com.bitscoder.onlinebookstore.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read-only projection of a borrowed book: the BookView columns plus when the copy was borrowed.
+ */
+public interface BookLoanView extends BookView {
+
+    LocalDateTime getBorrowedAt();
+}
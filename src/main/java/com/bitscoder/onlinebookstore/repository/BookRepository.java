@@ -1,10 +1,93 @@
 package com.bitscoder.onlinebookstore.repository;
 
+import com.bitscoder.onlinebookstore.constant.Genre;
 import com.bitscoder.onlinebookstore.models.Book;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
 
 /**
- *  This interface enables CRUD operations to be performed on Book entities identified by a String ID
+ *  This interface enables CRUD operations to be performed on Book entities identified by a String ID.
+ *  The listing and search queries return BookView projections: each is a single select of the displayed columns.
  */
 public interface BookRepository extends JpaRepository<Book, String> {
+
+    String BOOK_VIEW_COLUMNS = "b.id as id, b.title as title, b.author as author, b.isbn as isbn, b.genre as genre, " +
+            "b.publicationYear as publicationYear, b.quantity as quantity, b.version as version";
+
+    @Query("select " + BOOK_VIEW_COLUMNS + " from Book b where b.id = :id")
+    Optional<BookView> findViewById(@Param("id") String id);
+
+    /**
+     * Loads the book and locks its row until the transaction ends, so no loan can be opened for it meanwhile.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select b from Book b where b.id = :id")
+    Optional<Book> findForUpdateById(@Param("id") String id);
+
+    /**
+     * Takes one copy out of stock if any is left, as a single conditional UPDATE: the row lock serialises concurrent
+     * takers and the quantity check runs under it, so stock can neither be oversold nor lose a decrement.
+     * Returns 1 if a copy was taken and 0 if the book is out of stock or does not exist.
+     */
+    @Modifying
+    @Query("update Book b set b.quantity = b.quantity - 1, b.version = b.version + 1 where b.id = :id and b.quantity > 0")
+    int takeCopy(@Param("id") String id);
+
+    /**
+     * Puts one copy back into stock, atomically like takeCopy.
+     */
+    @Modifying
+    @Query("update Book b set b.quantity = b.quantity + 1, b.version = b.version + 1 where b.id = :id")
+    int returnCopy(@Param("id") String id);
+
+    /**
+     * Keyset (seek) pagination over the primary key: returns the books whose id sorts after the given cursor.
+     * Only the page size from the Pageable is used, so no OFFSET or COUNT query is issued.
+     */
+    @Query("select " + BOOK_VIEW_COLUMNS + " from Book b where b.id > :after order by b.id")
+    List<BookView> findPageAfter(@Param("after") String after, Pageable pageable);
+
+    /**
+     * Exact ISBN lookup, served by idx_books_isbn.
+     */
+    @Query("select " + BOOK_VIEW_COLUMNS + " from Book b where b.isbn = :isbn order by b.id")
+    List<BookView> findByIsbn(@Param("isbn") String isbn, Pageable pageable);
+
+    /**
+     * All books of one genre in title order, served by idx_books_genre.
+     */
+    @Query("select " + BOOK_VIEW_COLUMNS + " from Book b where b.genre = :genre order by b.title, b.id")
+    List<BookView> findByGenre(@Param("genre") Genre genre, Pageable pageable);
+
+    /**
+     * Case-insensitive substring match on title or author. The pattern must already be lower case, wrapped in %
+     * and have its LIKE wildcards escaped with '!'. On PostgreSQL this is served by the lower(title) and
+     * lower(author) trigram indexes from db/books-search-indexes.sql.
+     */
+    @Query("select " + BOOK_VIEW_COLUMNS + " from Book b " +
+            "where lower(b.title) like :pattern escape '!' or lower(b.author) like :pattern escape '!' " +
+            "order by b.title, b.id")
+    List<BookView> searchByTitleOrAuthor(@Param("pattern") String pattern, Pageable pageable);
+
+    /**
+     * Same as searchByTitleOrAuthor, restricted to one genre.
+     */
+    @Query("select " + BOOK_VIEW_COLUMNS + " from Book b where b.genre = :genre " +
+            "and (lower(b.title) like :pattern escape '!' or lower(b.author) like :pattern escape '!') " +
+            "order by b.title, b.id")
+    List<BookView> searchByTitleOrAuthorInGenre(@Param("pattern") String pattern, @Param("genre") Genre genre, Pageable pageable);
+
+    /**
+     * Counts the titles and the copies in stock of every genre that has books, for reconciling the in-memory shelf statistics.
+     */
+    @Query("select b.genre as genre, count(b) as titles, coalesce(sum(b.quantity), 0) as copies from Book b group by b.genre")
+    List<GenreStockView> countByGenre();
 }
@@ -0,0 +1,22 @@
+package com.bitscoder.onlinebookstore.repository;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+
+import java.time.LocalDate;
+
+/**
+ * Read-only projection of a book with the columns that BookDto.Response shows.
+ * Queries returning BookView select just these columns from the books table, so listing books never touches
+ * the owning user and never loads managed Book entities.
+ */
+public interface BookView {
+
+    String getId();
+    String getTitle();
+    String getAuthor();
+    String getIsbn();
+    Genre getGenre();
+    LocalDate getPublicationYear();
+    long getQuantity();
+    long getVersion();
+}
@@ -0,0 +1,13 @@
+package com.bitscoder.onlinebookstore.repository;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+
+/**
+ * Read-only projection of one shelf: how many titles a genre has and how many copies of them are in stock.
+ */
+public interface GenreStockView {
+
+    Genre getGenre();
+    long getTitles();
+    long getCopies();
+}
@@ -0,0 +1,12 @@
+package com.bitscoder.onlinebookstore.repository;
+
+/**
+ * Read-only projection of the unique columns of a user, for telling which of them a registration clashes with
+ * and for loading the names that are taken without loading whole users.
+ */
+public interface UserNameView {
+
+    String getId();
+    String getName();
+    String getEmail();
+}
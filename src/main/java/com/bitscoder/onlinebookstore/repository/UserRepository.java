@@ -1,8 +1,12 @@
 package com.bitscoder.onlinebookstore.repository;
 
 import com.bitscoder.onlinebookstore.models.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -11,7 +15,15 @@ import java.util.Optional;
 public interface UserRepository extends JpaRepository<User, String> {
     Optional<User> findByEmail(String email);
 
-    boolean existsByEmail(String email);
+    /**
+     * The users holding the given name or the given email (at most two), in one select.
+     */
+    @Query("select u.id as id, u.name as name, u.email as email from User u where u.name = :name or u.email = :email")
+    List<UserNameView> findByNameOrEmail(@Param("name") String name, @Param("email") String email);
 
-    boolean existsByName(String username);
+    /**
+     * Keyset pagination over the names and emails of all users, in id order.
+     */
+    @Query("select u.id as id, u.name as name, u.email as email from User u where u.id > :after order by u.id")
+    List<UserNameView> findNamesAfter(@Param("after") String after, Pageable pageable);
 }
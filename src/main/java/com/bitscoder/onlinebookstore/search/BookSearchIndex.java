@@ -0,0 +1,543 @@
+package com.bitscoder.onlinebookstore.search;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.dto.BookSearchResult;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * The BookSearchIndex class is an in-memory inverted index over the title and author of every book in the catalogue.
+ * Titles and authors are split into lower case, accent-free tokens, and each token maps to the ascending list of
+ * document numbers (postings) it occurs in. A sorted copy of each term dictionary answers prefix lookups, and one
+ * bit set per Genre serves the genre filter and facets.
+ * A query matches the books that contain every query token. The last token also matches as a prefix, so partial input
+ * can be autocompleted, and a token with no exact or prefix match falls back to the terms one edit away (a typo).
+ * Matches are ranked by the idf of the matched terms, title matches counting double, exact matches above prefix and typo matches.
+ * Updates are incremental: a changed book is re-added under a new document number and its old number is only marked
+ * deleted, so postings never need to be rewritten. Once deleted documents outnumber live ones the index compacts itself.
+ * The index is safe for concurrent use: queries share a read lock and updates take the write lock.
+ */
+public class BookSearchIndex {
+
+    private static final double TITLE_WEIGHT = 2.0;
+    private static final double AUTHOR_WEIGHT = 1.0;
+    private static final double PREFIX_MATCH = 0.8;
+    private static final double TYPO_MATCH = 0.5;
+    // caps the terms a short prefix can expand to, in dictionary order
+    private static final int MAX_PREFIX_TERMS = 64;
+    // shorter tokens have too many neighbours one edit away to be useful
+    private static final int MIN_TYPO_LENGTH = 4;
+    private static final int MIN_COMPACTION_DELETES = 1024;
+    private static final Genre[] GENRES = Genre.values();
+    private static final char[] ALPHABET = "abcdefghijklmnopqrstuvwxyz0123456789".toCharArray();
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    private Segment segment = new Segment();
+    // changes made while a rebuild is loading, replayed onto the rebuilt segment before it is swapped in
+    private List<Consumer<Segment>> pendingChanges;
+    private volatile boolean ready;
+
+    /**
+     * Adds the book, or replaces it if a book with the same id is already indexed.
+     * Like every update, it is ignored if the indexed copy has a newer version, so updates that race each other
+     * cannot leave stale data behind.
+     */
+    public void index(BookDto.Response book) {
+        apply(segment -> segment.put(book));
+    }
+
+    /**
+     * Changes the stock shown for an indexed book without re-tokenizing it. Unknown ids are ignored.
+     */
+    public void updateQuantity(String bookId, long quantity, long version) {
+        apply(segment -> segment.updateQuantity(bookId, quantity, version));
+    }
+
+    public void remove(String bookId) {
+        apply(segment -> segment.delete(bookId));
+    }
+
+    /**
+     * Replaces the whole index with the books the loader hands to its sink. Queries keep being served from the old
+     * index while the loader runs, and updates made in the meantime are applied to both.
+     */
+    public void rebuild(Consumer<Consumer<BookDto.Response>> loader) {
+        rebuildLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                pendingChanges = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            Segment rebuilt = new Segment();
+            try {
+                loader.accept(rebuilt::put);
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    pendingChanges = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+            lock.writeLock().lock();
+            try {
+                pendingChanges.forEach(change -> change.accept(rebuilt));
+                pendingChanges = null;
+                segment = rebuilt;
+                ready = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * True once the index has been fully built at least once.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return segment.docByBookId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ranked search over title and author. With an empty query, lists the books of the given genre instead.
+     */
+    public BookSearchResult search(String query, Genre genre, int limit) {
+        List<String> tokens = tokenize(query);
+        lock.readLock().lock();
+        try {
+            return tokens.isEmpty() ? segment.browse(genre, limit) : segment.search(tokens, genre, limit, true);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Titles of the best books for partially typed input, without typo matching.
+     */
+    public List<String> suggest(String prefix, int limit) {
+        List<String> tokens = tokenize(prefix);
+        if (tokens.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        BookSearchResult result;
+        lock.readLock().lock();
+        try {
+            // ask for extra hits since several books can share a title
+            result = segment.search(tokens, null, limit * 4, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+        Set<String> titles = new LinkedHashSet<>();
+        for (BookDto.Response book : result.getBooks()) {
+            if (titles.size() == limit) {
+                break;
+            }
+            titles.add(book.getTitle());
+        }
+        return new ArrayList<>(titles);
+    }
+
+
+    // HELPER METHODS
+    private void apply(Consumer<Segment> change) {
+        lock.writeLock().lock();
+        try {
+            change.accept(segment);
+            if (segment.needsCompaction()) {
+                segment = segment.compacted();
+            }
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String folded = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        List<String> tokens = new ArrayList<>();
+        for (String token : TOKEN_SEPARATOR.split(folded.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // every string one deletion, transposition, substitution or insertion away from the token
+    static Set<String> editsWithinOne(String token) {
+        Set<String> edits = new HashSet<>();
+        char[] chars = token.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            edits.add(token.substring(0, i) + token.substring(i + 1));
+            if (i + 1 < chars.length) {
+                edits.add(token.substring(0, i) + chars[i + 1] + chars[i] + token.substring(i + 2));
+            }
+            for (char c : ALPHABET) {
+                edits.add(token.substring(0, i) + c + token.substring(i + 1));
+            }
+        }
+        for (int i = 0; i <= chars.length; i++) {
+            for (char c : ALPHABET) {
+                edits.add(token.substring(0, i) + c + token.substring(i));
+            }
+        }
+        edits.remove(token);
+        return edits;
+    }
+
+    private static double idf(int documentFrequency, int liveDocs) {
+        return Math.log(1 + (double) Math.max(liveDocs, 1) / Math.max(documentFrequency, 1));
+    }
+
+    /**
+     * Ascending document numbers, appended to as books are added.
+     */
+    private static final class Postings {
+
+        private int[] docs = new int[2];
+        private int size;
+
+        void add(int doc) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            docs[size++] = doc;
+        }
+    }
+
+    private static final class Field {
+
+        private final double weight;
+        private final Map<String, Postings> terms = new HashMap<>();
+        private final TreeMap<String, Postings> sortedTerms = new TreeMap<>();
+
+        Field(double weight) {
+            this.weight = weight;
+        }
+
+        void add(String text, int doc) {
+            for (String token : new LinkedHashSet<>(tokenize(text))) {
+                Postings postings = terms.get(token);
+                if (postings == null) {
+                    postings = new Postings();
+                    terms.put(token, postings);
+                    sortedTerms.put(token, postings);
+                }
+                postings.add(doc);
+            }
+        }
+
+        boolean collectExact(String token, double match, List<TermMatch> matches) {
+            Postings postings = terms.get(token);
+            if (postings != null) {
+                matches.add(new TermMatch(postings, weight * match));
+            }
+            return postings != null;
+        }
+
+        boolean collectPrefixed(String prefix, List<TermMatch> matches) {
+            int collected = 0;
+            for (Postings postings : sortedTerms.subMap(prefix, false, prefix + Character.MAX_VALUE, false).values()) {
+                if (collected++ == MAX_PREFIX_TERMS) {
+                    break;
+                }
+                matches.add(new TermMatch(postings, weight * PREFIX_MATCH));
+            }
+            return collected > 0;
+        }
+    }
+
+    private record TermMatch(Postings postings, double weight) {
+    }
+
+    private record ScoredDoc(int doc, double score) {
+    }
+
+    /**
+     * One generation of the index. Document numbers are positions in docs and are never reused within a segment.
+     */
+    private static final class Segment {
+
+        private final List<BookDto.Response> docs = new ArrayList<>();
+        private final Map<String, Integer> docByBookId = new HashMap<>();
+        private final BitSet live = new BitSet();
+        private final Field title = new Field(TITLE_WEIGHT);
+        private final Field author = new Field(AUTHOR_WEIGHT);
+        private final EnumMap<Genre, BitSet> genreDocs = new EnumMap<>(Genre.class);
+        // the genre of each document, so ranking can count facets without dereferencing the books
+        private Genre[] genres = new Genre[16];
+        private int deleted;
+
+        void put(BookDto.Response book) {
+            Integer existing = docByBookId.get(book.getId());
+            if (existing != null && docs.get(existing).getVersion() > book.getVersion()) {
+                return;
+            }
+            delete(book.getId());
+            int doc = docs.size();
+            docs.add(book);
+            docByBookId.put(book.getId(), doc);
+            live.set(doc);
+            if (doc == genres.length) {
+                genres = Arrays.copyOf(genres, doc * 2);
+            }
+            genres[doc] = book.getGenre();
+            title.add(book.getTitle(), doc);
+            author.add(book.getAuthor(), doc);
+            if (book.getGenre() != null) {
+                genreDocs.computeIfAbsent(book.getGenre(), genre -> new BitSet()).set(doc);
+            }
+        }
+
+        void updateQuantity(String bookId, long quantity, long version) {
+            Integer doc = docByBookId.get(bookId);
+            if (doc == null || docs.get(doc).getVersion() > version) {
+                return;
+            }
+            // results already handed out keep referring to the old object, so it is replaced rather than changed
+            BookDto.Response book = docs.get(doc);
+            docs.set(doc, new BookDto.Response(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(),
+                    book.getGenre(), book.getPublicationYear(), quantity, book.getBorrowedAt(), version));
+        }
+
+        void delete(String bookId) {
+            Integer doc = docByBookId.remove(bookId);
+            if (doc == null) {
+                return;
+            }
+            BookDto.Response book = docs.set(doc, null);
+            live.clear(doc);
+            if (book.getGenre() != null) {
+                genreDocs.get(book.getGenre()).clear(doc);
+            }
+            deleted++;
+        }
+
+        boolean needsCompaction() {
+            return deleted >= MIN_COMPACTION_DELETES && deleted > docByBookId.size();
+        }
+
+        Segment compacted() {
+            Segment compacted = new Segment();
+            for (BookDto.Response book : docs) {
+                if (book != null) {
+                    compacted.put(book);
+                }
+            }
+            return compacted;
+        }
+
+        BookSearchResult search(List<String> tokens, Genre genre, int limit, boolean typoTolerant) {
+            int liveDocs = docByBookId.size();
+            List<List<TermMatch>> tokenMatches = new ArrayList<>(tokens.size());
+            for (int i = 0; i < tokens.size(); i++) {
+                tokenMatches.add(matches(tokens.get(i), i == tokens.size() - 1, typoTolerant));
+            }
+            // rarest token first, so the candidate set is as small as possible from the start
+            tokenMatches.sort(Comparator.comparingLong(Segment::postingsCount));
+
+            Hits candidates = null;
+            for (List<TermMatch> matches : tokenMatches) {
+                // merge the term postings pairwise in rounds, so a prefix that expands to many terms costs
+                // n log(terms) instead of n * terms
+                List<Hits> termHits = new ArrayList<>(matches.size());
+                for (TermMatch match : matches) {
+                    termHits.add(Hits.of(match, idf(match.postings().size, liveDocs), live));
+                }
+                while (termHits.size() > 1) {
+                    List<Hits> merged = new ArrayList<>((termHits.size() + 1) / 2);
+                    for (int i = 0; i < termHits.size(); i += 2) {
+                        merged.add(i + 1 < termHits.size() ? termHits.get(i).union(termHits.get(i + 1)) : termHits.get(i));
+                    }
+                    termHits = merged;
+                }
+                Hits tokenHits = termHits.isEmpty() ? new Hits(0) : termHits.get(0);
+                candidates = candidates == null ? tokenHits : candidates.intersect(tokenHits);
+                if (candidates.size == 0) {
+                    break;
+                }
+            }
+            return rank(candidates, genre, limit);
+        }
+
+        BookSearchResult browse(Genre genre, int limit) {
+            EnumMap<Genre, Long> facets = new EnumMap<>(Genre.class);
+            genreDocs.forEach((g, bits) -> {
+                if (!bits.isEmpty()) {
+                    facets.put(g, (long) bits.cardinality());
+                }
+            });
+            if (genre == null || !genreDocs.containsKey(genre)) {
+                return new BookSearchResult(List.of(), 0, facets);
+            }
+            BitSet bits = genreDocs.get(genre);
+            List<BookDto.Response> books = new ArrayList<>();
+            for (int doc = bits.nextSetBit(0); doc >= 0 && books.size() < limit; doc = bits.nextSetBit(doc + 1)) {
+                books.add(docs.get(doc));
+            }
+            return new BookSearchResult(books, bits.cardinality(), facets);
+        }
+
+        private List<TermMatch> matches(String token, boolean last, boolean typoTolerant) {
+            List<TermMatch> matches = new ArrayList<>();
+            boolean found = title.collectExact(token, 1.0, matches);
+            found |= author.collectExact(token, 1.0, matches);
+            if (last) {
+                found |= title.collectPrefixed(token, matches);
+                found |= author.collectPrefixed(token, matches);
+            }
+            if (!found && typoTolerant && token.length() >= MIN_TYPO_LENGTH) {
+                for (String variant : editsWithinOne(token)) {
+                    title.collectExact(variant, TYPO_MATCH, matches);
+                    author.collectExact(variant, TYPO_MATCH, matches);
+                }
+            }
+            return matches;
+        }
+
+        private static long postingsCount(List<TermMatch> matches) {
+            long count = 0;
+            for (TermMatch match : matches) {
+                count += match.postings().size;
+            }
+            return count;
+        }
+
+        private BookSearchResult rank(Hits hits, Genre genre, int limit) {
+            long[] genreCounts = new long[GENRES.length];
+            // min-heap of the best hits so far; on equal scores the older book ranks higher
+            PriorityQueue<ScoredDoc> best = new PriorityQueue<>(Comparator.comparingDouble(ScoredDoc::score)
+                    .thenComparing(ScoredDoc::doc, Comparator.reverseOrder()));
+            long totalMatches = 0;
+            for (int i = 0; i < hits.size; i++) {
+                int doc = hits.docs[i];
+                Genre bookGenre = genres[doc];
+                if (bookGenre != null) {
+                    genreCounts[bookGenre.ordinal()]++;
+                }
+                if (genre != null && genre != bookGenre) {
+                    continue;
+                }
+                totalMatches++;
+                if (best.size() < limit) {
+                    best.offer(new ScoredDoc(doc, hits.scores[i]));
+                } else if (limit > 0 && hits.scores[i] > best.peek().score()) {
+                    best.poll();
+                    best.offer(new ScoredDoc(doc, hits.scores[i]));
+                }
+            }
+            EnumMap<Genre, Long> facets = new EnumMap<>(Genre.class);
+            for (Genre g : GENRES) {
+                if (genreCounts[g.ordinal()] > 0) {
+                    facets.put(g, genreCounts[g.ordinal()]);
+                }
+            }
+            BookDto.Response[] books = new BookDto.Response[best.size()];
+            for (int i = books.length - 1; i >= 0; i--) {
+                books[i] = docs.get(best.poll().doc());
+            }
+            return new BookSearchResult(Arrays.asList(books), totalMatches, facets);
+        }
+    }
+
+    /**
+     * Matching documents in ascending order with their scores, kept in primitive arrays so that
+     * long postings lists can be merged without boxing.
+     */
+    private static final class Hits {
+
+        private final int[] docs;
+        private final double[] scores;
+        private int size;
+
+        Hits(int capacity) {
+            docs = new int[capacity];
+            scores = new double[capacity];
+        }
+
+        private void add(int doc, double score) {
+            docs[size] = doc;
+            scores[size++] = score;
+        }
+
+        static Hits of(TermMatch match, double idf, BitSet live) {
+            double score = match.weight() * idf;
+            Postings postings = match.postings();
+            Hits hits = new Hits(postings.size);
+            for (int i = 0; i < postings.size; i++) {
+                if (live.get(postings.docs[i])) {
+                    hits.add(postings.docs[i], score);
+                }
+            }
+            return hits;
+        }
+
+        // documents in either; a document matched through several terms keeps its best score
+        Hits union(Hits other) {
+            Hits merged = new Hits(size + other.size);
+            int i = 0;
+            int j = 0;
+            while (i < size || j < other.size) {
+                if (j == other.size || (i < size && docs[i] < other.docs[j])) {
+                    merged.add(docs[i], scores[i]);
+                    i++;
+                } else if (i == size || other.docs[j] < docs[i]) {
+                    merged.add(other.docs[j], other.scores[j]);
+                    j++;
+                } else {
+                    merged.add(docs[i], Math.max(scores[i], other.scores[j]));
+                    i++;
+                    j++;
+                }
+            }
+            return merged;
+        }
+
+        // documents in both, with the scores added up
+        Hits intersect(Hits other) {
+            Hits common = new Hits(Math.min(size, other.size));
+            int i = 0;
+            int j = 0;
+            while (i < size && j < other.size) {
+                if (docs[i] < other.docs[j]) {
+                    i++;
+                } else if (other.docs[j] < docs[i]) {
+                    j++;
+                } else {
+                    common.add(docs[i], scores[i] + other.scores[j]);
+                    i++;
+                    j++;
+                }
+            }
+            return common;
+        }
+    }
+}
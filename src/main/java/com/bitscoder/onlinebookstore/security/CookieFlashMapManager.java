@@ -0,0 +1,167 @@
+package com.bitscoder.onlinebookstore.security;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.web.servlet.DispatcherServlet;
+import org.springframework.web.servlet.FlashMap;
+import org.springframework.web.servlet.support.AbstractFlashMapManager;
+import org.springframework.web.util.WebUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The CookieFlashMapManager class keeps the flash attributes of a redirect in a signed cookie instead of the HttpSession,
+ * so the pages work without a session and any node can render the page a redirect leads to.
+ *
+ * The flash maps are written as JSON, signed with an HMAC-SHA256, and the cookie is dropped once they have been used or
+ * have expired. The signing key is derived from the JWT secret (an HMAC of the label "flash" under it), so a flash
+ * signature is never valid as a token signature, nor the other way round. A cookie whose signature does not match is ignored. Since the attributes go through
+ * JSON, a page reads an attribute that was an object as a map of its properties, which Thymeleaf renders the same way.
+ * Flash maps that would not fit into one cookie are logged and dropped.
+ */
+@Component(DispatcherServlet.FLASH_MAP_MANAGER_BEAN_NAME)
+@Slf4j
+public class CookieFlashMapManager extends AbstractFlashMapManager {
+
+    static final String COOKIE_NAME = "flash";
+    private static final int MAX_COOKIE_LENGTH = 4000;
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String KEY_LABEL = "flash";
+
+    private final ObjectMapper objectMapper;
+    private final SecretKeySpec key;
+
+    public CookieFlashMapManager(ObjectMapper objectMapper, @Value("${lms.jwtSecretKey}") String secretKey) {
+        this.objectMapper = objectMapper;
+        SecretKeySpec jwtKey = new SecretKeySpec(Base64.getDecoder().decode(secretKey), ALGORITHM);
+        this.key = new SecretKeySpec(hmac(jwtKey, KEY_LABEL), ALGORITHM);
+    }
+
+    @Override
+    protected List<FlashMap> retrieveFlashMaps(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, COOKIE_NAME);
+        if (cookie == null || cookie.getValue().isEmpty()) {
+            return null;
+        }
+        String[] parts = cookie.getValue().split("\\.");
+        try {
+            if (parts.length != 2 || !MessageDigest.isEqual(sign(parts[0]), Base64.getUrlDecoder().decode(parts[1]))) {
+                log.warn("Ignoring a flash cookie with an invalid signature");
+                return null;
+            }
+            List<StoredFlashMap> stored = objectMapper.readValue(Base64.getUrlDecoder().decode(parts[0]),
+                    new TypeReference<List<StoredFlashMap>>() {});
+            List<FlashMap> flashMaps = new ArrayList<>(stored.size());
+            for (StoredFlashMap entry : stored) {
+                flashMaps.add(entry.toFlashMap());
+            }
+            return flashMaps;
+        } catch (IllegalArgumentException | IOException e) {
+            log.warn("Ignoring an unreadable flash cookie: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    protected void updateFlashMaps(List<FlashMap> flashMaps, HttpServletRequest request, HttpServletResponse response) {
+        String value = "";
+        if (!flashMaps.isEmpty()) {
+            List<StoredFlashMap> stored = new ArrayList<>(flashMaps.size());
+            for (FlashMap flashMap : flashMaps) {
+                stored.add(StoredFlashMap.of(flashMap));
+            }
+            try {
+                String payload = Base64.getUrlEncoder().withoutPadding().encodeToString(objectMapper.writeValueAsBytes(stored));
+                value = payload + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(payload));
+            } catch (IOException e) {
+                log.warn("Could not write the flash attributes {}: {}", flashMaps, e.getMessage());
+            }
+            if (value.length() > MAX_COOKIE_LENGTH) {
+                log.warn("Dropping flash attributes of {} characters, more than fit into a cookie", value.length());
+                value = "";
+            }
+        }
+        if (value.isEmpty() && WebUtils.getCookie(request, COOKIE_NAME) == null) {
+            return;
+        }
+        Cookie cookie = new Cookie(COOKIE_NAME, value);
+        cookie.setHttpOnly(true);
+        cookie.setSecure(request.isSecure());
+        cookie.setPath("/");
+        cookie.setAttribute("SameSite", "Lax");
+        if (value.isEmpty()) {
+            cookie.setMaxAge(0);
+        }
+        response.addCookie(cookie);
+    }
+
+    // the maps of one response are all written together into one cookie, so no other request needs to be locked out
+    @Override
+    protected Object getFlashMapsMutex(HttpServletRequest request) {
+        return null;
+    }
+
+
+    // HELPER METHODS
+    private byte[] sign(String payload) {
+        return hmac(key, payload);
+    }
+
+    private static byte[] hmac(SecretKeySpec key, String message) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(message.getBytes(StandardCharsets.US_ASCII));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class StoredFlashMap {
+        private String targetRequestPath;
+        private Map<String, List<String>> targetRequestParams;
+        private long expirationTime;
+        private Map<String, Object> attributes;
+
+        static StoredFlashMap of(FlashMap flashMap) {
+            return new StoredFlashMap(flashMap.getTargetRequestPath(), new LinkedHashMap<>(flashMap.getTargetRequestParams()),
+                    flashMap.getExpirationTime(), new LinkedHashMap<>(flashMap));
+        }
+
+        FlashMap toFlashMap() {
+            FlashMap flashMap = new FlashMap();
+            flashMap.setTargetRequestPath(targetRequestPath);
+            if (targetRequestParams != null) {
+                flashMap.addTargetRequestParams(new LinkedMultiValueMap<>(targetRequestParams));
+            }
+            flashMap.setExpirationTime(expirationTime);
+            if (attributes != null) {
+                flashMap.putAll(attributes);
+            }
+            return flashMap;
+        }
+    }
+}
@@ -1,21 +1,44 @@
 package com.bitscoder.onlinebookstore.security;
 
 import com.bitscoder.onlinebookstore.security.jwt.AuthTokenFilter;
+import com.bitscoder.onlinebookstore.security.ratelimit.AuthRateLimitFilter;
+import com.bitscoder.onlinebookstore.security.ratelimit.TokenBucketRateLimiter;
+import com.bitscoder.onlinebookstore.security.services.BoundedPasswordEncoder;
 import com.bitscoder.onlinebookstore.security.services.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.annotation.web.configurers.HeadersConfigurer;
+import org.springframework.security.config.annotation.web.configurers.RequestCacheConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.HttpStatusEntryPoint;
+import org.springframework.security.web.authentication.LoginUrlAuthenticationEntryPoint;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
+import org.springframework.security.web.csrf.CsrfTokenRepository;
+import org.springframework.security.web.csrf.XorCsrfTokenRequestAttributeHandler;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.AnyRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestHeaderRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -27,10 +50,18 @@ import java.util.List;
 /**
  * The WebSecurityConfig class configures the security settings for the web application.
  * It sets up user authentication using UserDetailsServiceImpl and DaoAuthenticationProvider.
- * It also configures a JWT authentication filter (AuthTokenFilter) for handling JWT tokens.
+ * It also configures a JWT authentication filter (AuthTokenFilter) for handling JWT tokens, sent as a cookie by the pages
+ * and as a Bearer header by clients of the /api endpoints, which get 401 instead of the login form when they have none.
+ * Sign-in and registration attempts are rate limited per IP address and per email by an AuthRateLimitFilter in front of it.
  * The class configures CORS (Cross-Origin Resource Sharing) settings to handle requests from different origins.
- * It uses BCrypt for password encoding.
- * Lastly, it sets up a security filter chain to handle various security aspects like CSRF protection, session management, URL-based authorization, and form login.
+ * It uses BCrypt for password encoding, run on the bounded pool of a BoundedPasswordEncoder; passwords hashed with a
+ * different work factor are rehashed through UserDetailsServiceImpl when their user signs in.
+ * Lastly, it sets up a security filter chain to handle various security aspects like CSRF protection, session management and URL-based authorization.
+ * The chain is stateless: no HttpSession is created, the SecurityContext only lives for the request it was built from
+ * the token, the CSRF token is kept in the XSRF-TOKEN cookie and flash attributes in the cookie of CookieFlashMapManager,
+ * so any node can serve any request. Pages that need a signed in user redirect to the sign-in page.
+ * Static resources and the home page are matched first by a chain of their own (PUBLIC_CONTENT) that does no token,
+ * CSRF or security context work at all.
  */
 @Configuration
 @EnableMethodSecurity
@@ -38,6 +69,19 @@ import java.util.List;
 @RequiredArgsConstructor
 public class WebSecurityConfig {
 
+    /**
+     * Static resources at the locations Spring Boot serves them from, and the home page. Nothing about them depends on
+     * the user, so they get a chain of their own without the token filter, the CSRF token or the security context.
+     */
+    public static final RequestMatcher PUBLIC_CONTENT = new OrRequestMatcher(
+            new AntPathRequestMatcher("/css/**"),
+            new AntPathRequestMatcher("/js/**"),
+            new AntPathRequestMatcher("/images/**"),
+            new AntPathRequestMatcher("/webjars/**"),
+            new AntPathRequestMatcher("/favicon.*"),
+            new AntPathRequestMatcher("/*/icon-*"),
+            new AntPathRequestMatcher("/", HttpMethod.GET.name()));
+
     private final UserDetailsServiceImpl userDetailsService;
 
     @Bean
@@ -45,12 +89,42 @@ public class WebSecurityConfig {
         return new AuthTokenFilter();
     }
 
+    // only run inside the security filter chain, not a second time as a plain servlet filter
+    @Bean
+    public FilterRegistrationBean<AuthTokenFilter> authenticationJwtTokenFilterRegistration(AuthTokenFilter filter) {
+        FilterRegistrationBean<AuthTokenFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    @Bean
+    public AuthRateLimitFilter authRateLimitFilter(@Value("${lms.authIpBurst:20}") int ipBurst,
+                                                   @Value("${lms.authIpPerMinute:30}") int ipPerMinute,
+                                                   @Value("${lms.authEmailBurst:5}") int emailBurst,
+                                                   @Value("${lms.authEmailPerMinute:5}") int emailPerMinute,
+                                                   @Value("${lms.authRateLimitMaxKeys:100000}") long maxKeys,
+                                                   MeterRegistry meterRegistry) {
+        return new AuthRateLimitFilter(
+                new TokenBucketRateLimiter(ipBurst, ipPerMinute, maxKeys),
+                new TokenBucketRateLimiter(emailBurst, emailPerMinute, maxKeys),
+                meterRegistry);
+    }
+
+    // only run inside the security filter chain, not a second time as a plain servlet filter
+    @Bean
+    public FilterRegistrationBean<AuthRateLimitFilter> authRateLimitFilterRegistration(AuthRateLimitFilter filter) {
+        FilterRegistrationBean<AuthRateLimitFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
     @Bean
-    public DaoAuthenticationProvider authenticationProvider() {
+    public DaoAuthenticationProvider authenticationProvider(PasswordEncoder passwordEncoder) {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
 
         authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        authProvider.setUserDetailsPasswordService(userDetailsService);
+        authProvider.setPasswordEncoder(passwordEncoder);
 
         return authProvider;
     }
@@ -79,24 +153,60 @@ public class WebSecurityConfig {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public BoundedPasswordEncoder passwordEncoder(@Value("${lms.bcryptStrength:10}") int strength,
+                                                  @Value("${lms.passwordHashThreads:2}") int threads,
+                                                  @Value("${lms.passwordHashQueueSize:50}") int queueSize,
+                                                  @Value("${lms.passwordHashTimeoutMs:3000}") long timeoutMs,
+                                                  MeterRegistry meterRegistry) {
+        return new BoundedPasswordEncoder(strength, threads, queueSize, timeoutMs, meterRegistry);
     }
 
+    // shared with the pages whose ETag depends on the token their forms carry
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
-        http.csrf().disable()
-                .headers().frameOptions().disable()
-                .and()
-                .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.IF_REQUIRED)
-                .and()
-                .authorizeHttpRequests()
-                .requestMatchers("/auth/**", "/").permitAll()
-                .anyRequest().authenticated()
-                .and()
-                .formLogin();
-
-        http.authenticationProvider(authenticationProvider())
+    public CsrfTokenRepository csrfTokenRepository() {
+        return new CookieCsrfTokenRepository();
+    }
+
+    @Bean
+    @Order(1)
+    public SecurityFilterChain publicContentFilterChain(HttpSecurity http) throws Exception {
+        http.securityMatcher(PUBLIC_CONTENT)
+                .authorizeHttpRequests(authorize -> authorize.anyRequest().permitAll())
+                .csrf(AbstractHttpConfigurer::disable)
+                .requestCache(RequestCacheConfigurer::disable)
+                .securityContext(AbstractHttpConfigurer::disable)
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                // static resources carry the long-lived Cache-Control of spring.web.resources.cache
+                .headers(headers -> headers.cacheControl(HeadersConfigurer.CacheControlConfig::disable));
+        return http.build();
+    }
+
+    @Bean
+    @Order(2)
+    public SecurityFilterChain filterChain(HttpSecurity http, DaoAuthenticationProvider authenticationProvider,
+                                           AuthRateLimitFilter authRateLimitFilter) throws Exception {
+        // load the token on every request, so its cookie is set before a page that renders it can commit the response
+        XorCsrfTokenRequestAttributeHandler csrfTokenRequestHandler = new XorCsrfTokenRequestAttributeHandler();
+        csrfTokenRequestHandler.setCsrfRequestAttributeName(null);
+
+        http.csrf(csrf -> csrf
+                        .csrfTokenRepository(csrfTokenRepository())
+                        .csrfTokenRequestHandler(csrfTokenRequestHandler)
+                        // a request carrying its token in a header cannot be forged by another site, nor can obtaining one
+                        .ignoringRequestMatchers(new RequestHeaderRequestMatcher(HttpHeaders.AUTHORIZATION), new AntPathRequestMatcher("/api/auth/**")))
+                .headers(headers -> headers.frameOptions(HeadersConfigurer.FrameOptionsConfig::disable))
+                .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .securityContext(context -> context.securityContextRepository(new RequestAttributeSecurityContextRepository()))
+                .authorizeHttpRequests(authorize -> authorize
+                        .requestMatchers("/auth/**", "/api/auth/**", "/error").permitAll()
+                        .anyRequest().authenticated())
+                .exceptionHandling(exceptions -> exceptions
+                        // API clients get a 401 to act on, not the redirect to the login form
+                        .defaultAuthenticationEntryPointFor(new HttpStatusEntryPoint(HttpStatus.UNAUTHORIZED), new AntPathRequestMatcher("/api/**"))
+                        .defaultAuthenticationEntryPointFor(new LoginUrlAuthenticationEntryPoint("/auth/login"), AnyRequestMatcher.INSTANCE));
+
+        http.authenticationProvider(authenticationProvider)
+                .addFilterBefore(authRateLimitFilter, UsernamePasswordAuthenticationFilter.class)
                 .addFilterAfter(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
         return http.build();
     }
@@ -1,6 +1,13 @@
 package com.bitscoder.onlinebookstore.security.jwt;
 
+import com.bitscoder.onlinebookstore.security.WebSecurityConfig;
+import com.bitscoder.onlinebookstore.security.services.PrincipalCache;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
 import com.bitscoder.onlinebookstore.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.Cookie;
@@ -8,45 +15,100 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.security.web.context.RequestAttributeSecurityContextRepository;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The AuthTokenFilter class extends the OncePerRequestFilter class and is used to authenticate users.
  * It uses JwtUtils to validate the JWT token and UserDetailsServiceImpl to load user details.
- * The doFilterInternal method is overridden to authenticate the user for each request.
- * If the JWT token is valid, it gets the user details, creates an authentication object, and sets it in the SecurityContext.
+ * The doFilterInternal method is overridden to authenticate the user for each request, except on the paths that never
+ * look at the user (public content, /auth/** and /api/auth/**), which shouldNotFilter skips with precompiled matchers.
+ * It first looks the token up in the PrincipalCache; only on a miss is the token parsed (once) and the user loaded from the database.
+ * The time to authenticate a request that carries a token is recorded in bookstore.auth.token, tagged with the outcome:
+ * cached (found in the PrincipalCache), verified (parsed and loaded) or rejected.
+ * If the JWT token is valid, it gets the user details, creates an authentication object, and sets it in the SecurityContext,
+ * which is kept in a request attribute for the rest of the request; nothing is stored in the HttpSession.
  * If the JWT token is not valid or an exception occurs, it logs an error message.
- * The parseJwt method is used to extract the JWT token from the cookies in the request.
+ * The parseJwt method is used to extract the JWT token from the request: the "Authorization: Bearer" header sent by
+ * API clients, or else the "token" cookie set by the sign-in page.
  */
 
 @Slf4j
 public class AuthTokenFilter extends OncePerRequestFilter {
 
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String TOKEN_COOKIE = "token";
+    // pages and endpoints that never look at the user: public content, sign-in, registration and token requests
+    private static final RequestMatcher UNAUTHENTICATED_PATHS = new OrRequestMatcher(
+            WebSecurityConfig.PUBLIC_CONTENT,
+            new AntPathRequestMatcher("/auth/**"),
+            new AntPathRequestMatcher("/api/auth/**"));
+
+    private final SecurityContextRepository securityContextRepository = new RequestAttributeSecurityContextRepository();
+
     @Autowired
     private JwtUtils jwtUtils;
     @Autowired
     private UserDetailsServiceImpl userDetailsService;
+    @Autowired
+    private PrincipalCache principalCache;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    private Timer cachedTimer;
+    private Timer verifiedTimer;
+    private Timer rejectedTimer;
+
+    @PostConstruct
+    public void init() {
+        cachedTimer = tokenTimer("cached");
+        verifiedTimer = tokenTimer("verified");
+        rejectedTimer = tokenTimer("rejected");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return UNAUTHENTICATED_PATHS.matches(request);
+    }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         try {
             String jwt = parseJwt(request);
-            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-
-                String email = jwtUtils.getUserNameFromJwtToken(jwt);
-
-                UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-                        userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            if (jwt != null) {
+                long start = System.nanoTime();
+                UserDetails userDetails = principalCache.get(jwt);
+                Timer outcome = cachedTimer;
+                if (userDetails == null) {
+                    userDetails = loadPrincipal(jwt);
+                    outcome = userDetails != null ? verifiedTimer : rejectedTimer;
+                }
+                outcome.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                if (userDetails != null) {
+                    UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                            userDetails, null, userDetails.getAuthorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                    SecurityContext context = SecurityContextHolder.getContext();
+                    context.setAuthentication(authentication);
+                    // saved for this request only; the session management of the chain would otherwise take the
+                    // user for a fresh sign-in and replace the CSRF token on every request
+                    securityContextRepository.saveContext(context, request, response);
+                }
             }
         } catch (Exception e) {
             log.error("Cannot set user authentication: {}", e);
@@ -54,45 +116,30 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private UserDetails loadPrincipal(String jwt) {
+        Claims claims = jwtUtils.getClaimsFromJwtToken(jwt);
+        if (claims == null) {
+            return null;
+        }
+        UserDetailsImpl userDetails = (UserDetailsImpl) userDetailsService.loadUserByUsername(claims.getSubject());
+        principalCache.put(jwt, userDetails, claims.getExpiration());
+        return userDetails;
+    }
+
+    private Timer tokenTimer(String outcome) {
+        return Timer.builder("bookstore.auth.token")
+                .description("Time to authenticate a request from its JWT")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
     private String parseJwt(HttpServletRequest request) {
-        Cookie[] cookies = request.getCookies();
-        if (cookies != null) {
-            for (Cookie cookie : cookies) {
-                if ("token".equals(cookie.getName())) {
-                    return cookie.getValue();
-                }
-            }
+        String headerAuth = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (StringUtils.hasText(headerAuth) && headerAuth.startsWith(BEARER_PREFIX)) {
+            return headerAuth.substring(BEARER_PREFIX.length());
         }
-        return null;
+        Cookie cookie = WebUtils.getCookie(request, TOKEN_COOKIE);
+        return cookie != null ? cookie.getValue() : null;
     }
 }
 
-//    @Override
-//    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
-//        try {
-//            String jwt = parseJwt(request);
-//            if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-//
-//                String email = jwtUtils.getUserNameFromJwtToken(jwt);
-//
-//                UserDetails userDetails = userDetailsService.loadUserByUsername(email);
-//                UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
-//                        userDetails, null, userDetails.getAuthorities());
-//                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-//
-//                SecurityContextHolder.getContext().setAuthentication(authentication);
-//            }
-//        } catch (Exception e) {
-//            log.error("Cannot set user authentication: {}", e);
-//        }
-//        filterChain.doFilter(request, response);
-//    }
-//
-//    private String parseJwt(HttpServletRequest request) {
-//        String headerAuth = request.getHeader("Authorization");
-//
-//        if (StringUtils.hasText(headerAuth) && headerAuth.startsWith("Bearer ")) {
-//            return headerAuth.substring(7, headerAuth.length());
-//        }
-//        return null;
-//    }
\ No newline at end of file
@@ -1,13 +1,19 @@
 package com.bitscoder.onlinebookstore.security.jwt;
 
 import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.annotation.Timed;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -19,14 +25,17 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The JwtUtils class is a component that handles operations related to JSON Web Tokens (JWT).
  * It reads the JWT expiration time and secret key from the application properties.
- * The init method initializes the secret key for HMAC SHA.
+ * The init method initializes the secret key for HMAC SHA, the JWT parser shared by all verifications,
+ * and a bounded cache of already verified tokens that keeps each entry only until the token expires.
  * The generateJwtToken method generates a JWT token for an authenticated user.
  * The getUserNameFromJwtToken method extracts the username from a given JWT token.
  * The validateJwtToken method validates a given JWT token and logs different errors for various exceptions.
+ * The getClaimsFromJwtToken method validates a token and returns its claims in one parse, or null if it is invalid.
  * The getJwtExpirationMs method returns the JWT expiration time in milliseconds.
  * The getJwtExpirationDate method calculates and returns the expiration date of the JWT.
  */
@@ -40,11 +49,21 @@ public class JwtUtils {
 
     @Value("${lms.jwtSecretKey}")
     private String jwtSecretKey;
+
+    @Value("${lms.jwtVerifiedCacheMaxSize:10000}")
+    private long jwtVerifiedCacheMaxSize;
     private SecretKey key;
+    private JwtParser jwtParser;
+    private Cache<String, Claims> verifiedTokens;
 
     @PostConstruct
     public void init() {
         this.key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtSecretKey));
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(jwtVerifiedCacheMaxSize)
+                .expireAfter(new UntilTokenExpiry())
+                .build();
     }
 
 
@@ -60,18 +79,20 @@ public class JwtUtils {
     }
 
     public String getUserNameFromJwtToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return verify(token).getSubject();
     }
 
     public boolean validateJwtToken(String authToken) {
+        return getClaimsFromJwtToken(authToken) != null;
+    }
+
+    /**
+     * Verifies the token and returns its claims in a single parse, or null when the token is not valid.
+     */
+    @Timed(value = "bookstore.jwt.verify", description = "Time to verify a JWT, including cache hits")
+    public Claims getClaimsFromJwtToken(String authToken) {
         try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(authToken);
-            return true;
+            return verify(authToken);
         } catch (SignatureException e) {
             log.error("'Invalid JWT signature: {}", e.getMessage());
         } catch (MalformedJwtException e) {
@@ -84,7 +105,23 @@ public class JwtUtils {
             log.error("JWT claims string is empty: {}", e.getMessage());
         }
 
-        return false;
+        return null;
+    }
+
+    // Tokens that already passed signature verification are remembered until they expire, so repeat
+    // requests skip the HMAC check and the Base64/JSON decode. Tokens without an expiry are never cached.
+    private Claims verify(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("JWT String argument cannot be null or empty.");
+        }
+        Claims claims = verifiedTokens.getIfPresent(token);
+        if (claims == null) {
+            claims = jwtParser.parseClaimsJws(token).getBody();
+            if (claims.getExpiration() != null) {
+                verifiedTokens.put(token, claims);
+            }
+        }
+        return claims;
     }
 
     public int getJwtExpirationMs() {
@@ -96,4 +133,23 @@ public class JwtUtils {
                 .atZone(ZoneId.systemDefault())
                 .toLocalDateTime();
     }
+
+    private static class UntilTokenExpiry implements Expiry<String, Claims> {
+
+        @Override
+        public long expireAfterCreate(String token, Claims claims, long currentTime) {
+            long remainingMs = claims.getExpiration().getTime() - System.currentTimeMillis();
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, remainingMs));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, Claims claims, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, claims, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String token, Claims claims, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
 }
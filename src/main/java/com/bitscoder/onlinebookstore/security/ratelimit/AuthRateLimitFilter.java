@@ -0,0 +1,90 @@
+package com.bitscoder.onlinebookstore.security.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The AuthRateLimitFilter class limits the sign-in and registration attempts (POST /auth/login, /auth/register and
+ * /api/auth/token), each of which costs a BCrypt hash and database lookups. It runs in the security filter chain before AuthTokenFilter.
+ * Every attempt takes a token from the bucket of the client's IP address and, when the form has an email, from the
+ * bucket of that email, so neither one address trying many accounts nor many addresses trying one account get through.
+ * An attempt that finds either bucket empty is answered with 429 Too Many Requests and a Retry-After header, and is
+ * counted in bookstore.auth.rate.limited (tagged with the bucket that refused it). Other requests pass untouched.
+ * The IP address is the request's remote address; behind a proxy set server.forward-headers-strategy so that it is
+ * the client's and not the proxy's.
+ */
+@Slf4j
+public class AuthRateLimitFilter extends OncePerRequestFilter {
+
+    private static final Set<String> LIMITED_PATHS = Set.of("/auth/login", "/auth/register", "/api/auth/token");
+
+    private final TokenBucketRateLimiter ipLimiter;
+    private final TokenBucketRateLimiter emailLimiter;
+    private final Counter ipRejections;
+    private final Counter emailRejections;
+
+    public AuthRateLimitFilter(TokenBucketRateLimiter ipLimiter, TokenBucketRateLimiter emailLimiter, MeterRegistry meterRegistry) {
+        this.ipLimiter = ipLimiter;
+        this.emailLimiter = emailLimiter;
+        this.ipRejections = rejectionCounter(meterRegistry, "ip");
+        this.emailRejections = rejectionCounter(meterRegistry, "email");
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod())
+                || !LIMITED_PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        long waitNanos = ipLimiter.tryAcquire(request.getRemoteAddr());
+        if (waitNanos > 0) {
+            ipRejections.increment();
+            reject(request, response, waitNanos);
+            return;
+        }
+        String email = request.getParameter("email");
+        if (email != null && !email.isBlank()) {
+            waitNanos = emailLimiter.tryAcquire(email.trim().toLowerCase(Locale.ROOT));
+            if (waitNanos > 0) {
+                emailRejections.increment();
+                reject(request, response, waitNanos);
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+
+    // HELPER METHODS
+    private void reject(HttpServletRequest request, HttpServletResponse response, long waitNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+        log.warn("Rate limited {} from {}", request.getRequestURI(), request.getRemoteAddr());
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write("Too many attempts, please try again in " + retryAfterSeconds + " seconds");
+    }
+
+    private static Counter rejectionCounter(MeterRegistry meterRegistry, String bucket) {
+        return Counter.builder("bookstore.auth.rate.limited")
+                .description("Sign-in and registration attempts refused by the rate limiter")
+                .tag("bucket", bucket)
+                .register(meterRegistry);
+    }
+}
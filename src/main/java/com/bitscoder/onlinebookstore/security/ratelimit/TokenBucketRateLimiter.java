@@ -0,0 +1,65 @@
+package com.bitscoder.onlinebookstore.security.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * The TokenBucketRateLimiter class is a lock-free token bucket per key: a bucket holds at most burst tokens, gains
+ * one token every emission interval (refillPerMinute tokens a minute), and every permitted request takes one.
+ *
+ * A bucket is stored as a single AtomicLong, the time at which it will be full again (the generic cell rate algorithm,
+ * which behaves exactly like a token bucket without having to store the token count and the last refill separately).
+ * A request is permitted while that time is at most burst intervals ahead of now, and moves it one interval further,
+ * with a compare-and-set; so concurrent requests for the same key never block and never overdraw the bucket.
+ * A bucket left alone for burst intervals is full again, so it is dropped from memory after that long without access;
+ * at most maxKeys buckets are kept.
+ */
+public class TokenBucketRateLimiter {
+
+    private final Cache<String, AtomicLong> buckets;
+    private final long emissionIntervalNanos;
+    private final long capacityNanos;
+    private final LongSupplier clock;
+
+    public TokenBucketRateLimiter(int burst, int refillPerMinute, long maxKeys) {
+        this(burst, refillPerMinute, maxKeys, System::nanoTime);
+    }
+
+    public TokenBucketRateLimiter(int burst, int refillPerMinute, long maxKeys, LongSupplier clock) {
+        this.emissionIntervalNanos = TimeUnit.MINUTES.toNanos(1) / refillPerMinute;
+        this.capacityNanos = emissionIntervalNanos * burst;
+        this.clock = clock;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(Duration.ofNanos(capacityNanos))
+                .build();
+    }
+
+    /**
+     * Takes a token from the key's bucket. Returns 0 when the request is permitted, otherwise the nanoseconds until
+     * the bucket has a token again.
+     */
+    public long tryAcquire(String key) {
+        AtomicLong fullAt = buckets.get(key, k -> new AtomicLong(Long.MIN_VALUE));
+        while (true) {
+            long now = clock.getAsLong();
+            long current = fullAt.get();
+            long next = Math.max(current, now) + emissionIntervalNanos;
+            if (next - now > capacityNanos) {
+                return next - now - capacityNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public long size() {
+        return buckets.estimatedSize();
+    }
+}
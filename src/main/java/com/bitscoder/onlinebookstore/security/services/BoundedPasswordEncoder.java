@@ -0,0 +1,125 @@
+package com.bitscoder.onlinebookstore.security.services;
+
+import com.bitscoder.onlinebookstore.exception.ServiceBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The BoundedPasswordEncoder class runs BCrypt hashing and verification on a small, dedicated pool of threads.
+ * BCrypt is deliberately slow, so a burst of sign-ins or registrations would otherwise keep every request thread busy
+ * hashing and starve the catalogue pages. Here at most lms.passwordHashThreads hashes run at once and at most
+ * lms.passwordHashQueueSize wait; beyond that, or when a hash has waited lms.passwordHashTimeoutMs, the request fails
+ * straight away with a ServiceBusyException instead of queueing behind the others.
+ * The work factor is lms.bcryptStrength (see PasswordEncoderBenchmark to calibrate it). upgradeEncoding reports every
+ * hash made with a different cost, so DaoAuthenticationProvider rehashes the password at the next successful sign-in.
+ * Queue depth, active threads and completed hashes are published as the executor metrics of "passwordHashing",
+ * together with the timer bookstore.password.hash and the counter bookstore.password.hash.rejected.
+ */
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+
+    private final BCryptPasswordEncoder delegate;
+    private final int strength;
+    private final ThreadPoolExecutor executor;
+    private final long timeoutMs;
+    private final Timer hashTimer;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(int strength, int threads, int queueSize, long timeoutMs, MeterRegistry meterRegistry) {
+        this.delegate = new BCryptPasswordEncoder(strength);
+        this.strength = strength;
+        this.timeoutMs = timeoutMs;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                task -> {
+                    Thread thread = new Thread(task, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "passwordHashing");
+        this.hashTimer = Timer.builder("bookstore.password.hash")
+                .description("Time to hash or verify one password, excluding the wait in the queue")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("bookstore.password.hash.rejected")
+                .description("Password hashes refused because the hashing pool was full or too slow")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    // also true for a higher cost than configured, so lowering lms.bcryptStrength takes effect as users sign in
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT_COST.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) != strength;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+
+    // HELPER METHODS
+    private <T> T run(Callable<T> hashing) {
+        Future<T> result;
+        try {
+            result = executor.submit(() -> hashTimer.recordCallable(hashing));
+        } catch (RejectedExecutionException e) {
+            throw busy();
+        }
+        try {
+            return result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            throw busy();
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw busy();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    private ServiceBusyException busy() {
+        rejected.increment();
+        log.warn("Password hashing pool is saturated ({} queued), refusing the request", executor.getQueue().size());
+        return new ServiceBusyException("Too many sign-in attempts right now, please try again in a moment");
+    }
+}
@@ -0,0 +1,73 @@
+package com.bitscoder.onlinebookstore.security.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The PrincipalCache class keeps the UserDetailsImpl built for a JWT token so that authenticated requests
+ * do not have to parse the token and load the user from the database again.
+ *
+ * Entries are keyed by the raw token and live for lms.principalCacheTtlMs, but never longer than the token itself.
+ * The cache holds at most lms.principalCacheMaxSize entries and evicts the least recently used ones beyond that.
+ * The invalidate method drops the entry of a token, and is called when the user logs out.
+ */
+
+@Component
+@Slf4j
+public class PrincipalCache {
+
+    private final Cache<String, CachedPrincipal> cache;
+
+    public PrincipalCache(@Value("${lms.principalCacheTtlMs:300000}") long ttlMs,
+                          @Value("${lms.principalCacheMaxSize:10000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new TokenBoundExpiry(TimeUnit.MILLISECONDS.toNanos(ttlMs)))
+                .build();
+    }
+
+    public UserDetailsImpl get(String token) {
+        CachedPrincipal cached = cache.getIfPresent(token);
+        return cached == null ? null : cached.userDetails();
+    }
+
+    public void put(String token, UserDetailsImpl userDetails, Date tokenExpiration) {
+        cache.put(token, new CachedPrincipal(userDetails, tokenExpiration.getTime()));
+    }
+
+    public void invalidate(String token) {
+        if (token != null) {
+            cache.invalidate(token);
+            log.info("Evicted cached principal for logged out token");
+        }
+    }
+
+    private record CachedPrincipal(UserDetailsImpl userDetails, long tokenExpiresAtMs) {
+    }
+
+    private record TokenBoundExpiry(long ttlNanos) implements Expiry<String, CachedPrincipal> {
+
+        @Override
+        public long expireAfterCreate(String token, CachedPrincipal value, long currentTime) {
+            long untilTokenExpiry = TimeUnit.MILLISECONDS.toNanos(value.tokenExpiresAtMs() - System.currentTimeMillis());
+            return Math.max(0, Math.min(ttlNanos, untilTokenExpiry));
+        }
+
+        @Override
+        public long expireAfterUpdate(String token, CachedPrincipal value, long currentTime, long currentDuration) {
+            return expireAfterCreate(token, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String token, CachedPrincipal value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.bitscoder.onlinebookstore.security.services;
+
+import com.bitscoder.onlinebookstore.repository.UserNameView;
+import com.bitscoder.onlinebookstore.repository.UserRepository;
+import com.bitscoder.onlinebookstore.util.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * The TakenUserNames class remembers, in a BloomFilter, every user name and email in use.
+ * The filter is loaded from the users table once the application is ready and AuthService adds each new registration
+ * to it. When neither the name nor the email of a registration is in the filter they are certainly free (as far as this
+ * instance has seen), so AuthService can insert the user without asking the database first. Users registered through
+ * another instance are caught by the unique constraints instead.
+ * Until the filter is loaded, every name counts as possibly taken.
+ */
+@Slf4j
+@Component
+public class TakenUserNames {
+
+    private static final int LOAD_PAGE_SIZE = 5000;
+
+    private final UserRepository userRepository;
+    private final BloomFilter filter;
+    private volatile boolean loaded;
+
+    public TakenUserNames(UserRepository userRepository,
+                          @Value("${lms.takenNamesExpected:1000000}") long expectedNames,
+                          @Value("${lms.takenNamesFalsePositiveRate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.filter = new BloomFilter(expectedNames * 2, falsePositiveRate);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long started = System.nanoTime();
+        try {
+            long count = 0;
+            String cursor = "";
+            List<UserNameView> page;
+            do {
+                page = userRepository.findNamesAfter(cursor, PageRequest.of(0, LOAD_PAGE_SIZE));
+                for (UserNameView user : page) {
+                    add(user.getName(), user.getEmail());
+                    cursor = user.getId();
+                }
+                count += page.size();
+            } while (page.size() == LOAD_PAGE_SIZE);
+            loaded = true;
+            log.info("Loaded the names and emails of {} users in {} ms ({} KB filter)",
+                    count, (System.nanoTime() - started) / 1_000_000, filter.bitSize() / 8 / 1024);
+        } catch (RuntimeException e) {
+            log.error("Could not load the taken user names, registrations will check the database: {}", e.getMessage());
+        }
+    }
+
+    public boolean mightBeTaken(String name, String email) {
+        return !loaded || filter.mightContain(nameKey(name)) || filter.mightContain(emailKey(email));
+    }
+
+    public void add(String name, String email) {
+        filter.add(nameKey(name));
+        filter.add(emailKey(email));
+    }
+
+
+    // HELPER METHODS
+    private static String nameKey(String name) {
+        return "name:" + name;
+    }
+
+    private static String emailKey(String email) {
+        return "email:" + email;
+    }
+}
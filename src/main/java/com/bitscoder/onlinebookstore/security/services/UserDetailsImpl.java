@@ -15,12 +15,13 @@ import java.util.Objects;
 
 /**
  * The UserDetailsImpl class implements the UserDetails interface and provides the details of a user.
- * It includes fields such as id, name, email, password, and authorities.
+ * It includes fields such as id, name, email, password, role, and authorities.
  *
  * The UserDetailsImpl constructor initializes these fields and logs the creation of the UserDetails object.
  *
  * The build method is a static method that creates a UserDetailsImpl object from a User object.
- * It assigns the user's id, email, and password to the UserDetailsImpl object, and sets the authorities to USER.
+ * It assigns the user's id, name, email, password and role to the UserDetailsImpl object, and sets the authorities to USER.
+ * Because it carries the name and role, the service layer can use it directly instead of loading the User again.
  *
  * The class also overrides the methods from the UserDetails interface to get the user's authorities, id, email, password,
  * and username, and to check if the account is non-expired, non-locked, and enabled.
@@ -40,15 +41,17 @@ public class UserDetailsImpl implements UserDetails {
     private String email;
     @JsonIgnore
     private String password;
+    private Roles role;
     private Collection<? extends GrantedAuthority> authorities;
 
     public UserDetailsImpl(
-            String id, String email, String password,
-            List<GrantedAuthority> authorities) {
+            String id, String name, String email, String password,
+            Roles role, List<GrantedAuthority> authorities) {
         this.id = id;
-        this.name = email;
+        this.name = name;
         this.email = email;
         this.password = password;
+        this.role = role;
         this.authorities = authorities;
 
         logUserDetailsCreation();
@@ -59,8 +62,10 @@ public class UserDetailsImpl implements UserDetails {
 
         UserDetailsImpl userDetails = new UserDetailsImpl(
                 user.getId(),
+                user.getName(),
                 user.getEmail(),
                 user.getPassword(),
+                user.getRoles(),
                 authorities
         );
         log.info("UserDetailsImpl built for user: {}", userDetails.getUsername());
@@ -83,10 +88,18 @@ public class UserDetailsImpl implements UserDetails {
         return id;
     }
 
+    public String getName() {
+        return name;
+    }
+
     public String getEmail() {
         return email;
     }
 
+    public Roles getRole() {
+        return role;
+    }
+
     @Override
     public String getPassword() {
         return password;
@@ -133,6 +146,7 @@ public class UserDetailsImpl implements UserDetails {
                 "id='" + id + '\'' +
                 ", name='" + name + '\'' +
                 ", email='" + email + '\'' +
+                ", role=" + role +
                 ", authorities=" + authorities +
                 '}';
     }
@@ -2,10 +2,12 @@ package com.bitscoder.onlinebookstore.security.services;
 
 import com.bitscoder.onlinebookstore.models.User;
 import com.bitscoder.onlinebookstore.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -16,17 +18,20 @@ import org.springframework.stereotype.Service;
  *
  * The loadUserByUsername method is used to load a user by their email. It fetches the user from the UserRepository.
  * If the user is not found, it throws a UsernameNotFoundException. If the user is found, it logs the event and returns a UserDetailsImpl object built from the user.
+ *
+ * The updatePassword method stores a password rehashed at sign-in, when the stored hash was made with a different BCrypt cost than lms.bcryptStrength.
  */
 
 @Service
 @AllArgsConstructor
 @Slf4j
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
     @Override
     @Transactional
+    @Timed(value = "bookstore.user.load", description = "Time to load a user by email")
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
         log.info("Trying to get user by email: {}", email);
 
@@ -39,4 +44,14 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         log.info("Found user: {}", email);
         return UserDetailsImpl.build(user);
     }
+
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        User user = userRepository.findByEmail(userDetails.getUsername())
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + userDetails.getUsername()));
+        user.setPassword(newPassword);
+        log.info("Rehashed password of user: {} with the current work factor", userDetails.getUsername());
+        return UserDetailsImpl.build(userRepository.save(user));
+    }
 }
@@ -0,0 +1,23 @@
+package com.bitscoder.onlinebookstore.service;
+
+import com.bitscoder.onlinebookstore.dto.ApiResponse;
+import com.bitscoder.onlinebookstore.dto.BookImportReport;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The BookImportService interface defines the contract for importing a whole catalogue of books in one upload.
+ * The upload is either CSV (title,author,isbn,genre,quantity,publicationYear with an optional header line)
+ * or JSON lines (one BookDto object per line), and is read row by row so memory use does not depend on its size.
+ * Rows that cannot be imported are reported with their line number instead of failing the whole import.
+ */
+
+public interface BookImportService {
+
+    enum Format { CSV, JSON_LINES }
+
+    ResponseEntity<ApiResponse<BookImportReport>> importBooks(InputStream upload, Format format, UserDetailsImpl currentUser) throws IOException;
+}
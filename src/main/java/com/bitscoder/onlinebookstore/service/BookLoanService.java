@@ -0,0 +1,21 @@
+package com.bitscoder.onlinebookstore.service;
+
+import com.bitscoder.onlinebookstore.dto.ApiResponse;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+
+/**
+ * The BookLoanService interface defines the contract for borrowing and returning copies of books.
+ * Borrowing takes one copy out of the book's stock and fails when none is left; returning puts it back.
+ * The books in the responses carry the current stock and, for borrowed books, the time they were borrowed (borrowedAt).
+ */
+
+public interface BookLoanService {
+
+    ResponseEntity<ApiResponse<BookDto.Response>> borrowBook(String bookId, UserDetailsImpl currentUser);
+    ResponseEntity<ApiResponse<BookDto.Response>> returnBook(String bookId, UserDetailsImpl currentUser);
+    ResponseEntity<ApiResponse<List<BookDto.Response>>> getBorrowedBooks(UserDetailsImpl currentUser);
+}
@@ -0,0 +1,30 @@
+package com.bitscoder.onlinebookstore.service;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.dto.ApiResponse;
+import com.bitscoder.onlinebookstore.dto.BookSearchResult;
+import com.bitscoder.onlinebookstore.models.Book;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The BookSearchService interface defines the contract for the in-memory catalogue search.
+ * It provides ranked, typo tolerant search with genre facets, title autocompletion, and the methods the book
+ * services call to keep the index in step with the database.
+ * The index is built when the application starts; until then isReady() is false and callers should fall back
+ * to BookService.searchBooks.
+ */
+
+public interface BookSearchService {
+
+    boolean isReady();
+    ResponseEntity<ApiResponse<BookSearchResult>> searchCatalogue(String query, Genre genre, UserDetailsImpl currentUser);
+    ResponseEntity<ApiResponse<List<String>>> suggestTitles(String prefix, UserDetailsImpl currentUser);
+    void indexBook(Book book);
+    void indexBooks(Collection<Book> books);
+    void updateQuantity(String id, long quantity, long version);
+    void removeBook(String id);
+}
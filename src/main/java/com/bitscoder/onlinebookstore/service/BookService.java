@@ -1,24 +1,29 @@
 package com.bitscoder.onlinebookstore.service;
 
+import com.bitscoder.onlinebookstore.constant.Genre;
 import com.bitscoder.onlinebookstore.dto.ApiResponse;
 import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
 import org.springframework.http.ResponseEntity;
 
-import java.security.Principal;
 import java.util.List;
 
 /**
  * The BookService interface defines the contract for a service that manages books in a store.
- * It provides methods to add a new book to the store, retrieve all books, retrieve a book by its ID, update a book's details, and remove a book from the store.
- * Each method requires the Principal object of the user performing the operation.
+ * It provides methods to add a new book to the store, retrieve books page by page, retrieve a book by its ID, update a book's details, and remove a book from the store.
+ * Books can be searched by ISBN (exact match), by a title/author fragment, by genre, or by a fragment within a genre.
+ * Books are listed with keyset pagination: pass the nextCursor of the previous page as "after" (or null for the first page).
+ * Each method requires the authenticated UserDetailsImpl of the user performing the operation, taken from the security context,
+ * so implementations do not need to load the user again.
  * The methods return a ResponseEntity with an ApiResponse object that contains the operation's result.
  */
 
 public interface BookService {
 
-    ResponseEntity<ApiResponse<BookDto.Response>> addNewBookToStore(BookDto bookDto, Principal principal);
-    ResponseEntity<ApiResponse<List<BookDto.Response>>> getAllBooks(Principal principal);
-    ResponseEntity<ApiResponse<BookDto.Response>> getBookById(String id, Principal principal);
-    ResponseEntity<ApiResponse<BookDto.Response>> updateBook(String id, BookDto bookRequest, Principal principal);
-    void removeBook(String id, Principal principal);
+    ResponseEntity<ApiResponse<BookDto.Response>> addNewBookToStore(BookDto bookDto, UserDetailsImpl currentUser);
+    ResponseEntity<ApiResponse<BookDto.Page>> getAllBooks(String after, int size, UserDetailsImpl currentUser);
+    ResponseEntity<ApiResponse<List<BookDto.Response>>> searchBooks(String query, Genre genre, UserDetailsImpl currentUser);
+    ResponseEntity<ApiResponse<BookDto.Response>> getBookById(String id, UserDetailsImpl currentUser);
+    ResponseEntity<ApiResponse<BookDto.Response>> updateBook(String id, BookDto bookRequest, UserDetailsImpl currentUser);
+    ResponseEntity<ApiResponse<BookDto.Response>> removeBook(String id, UserDetailsImpl currentUser);
 }
@@ -0,0 +1,29 @@
+package com.bitscoder.onlinebookstore.service;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.dto.ApiResponse;
+import com.bitscoder.onlinebookstore.dto.CatalogueStatistics;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * The CatalogueStatisticsService interface defines the contract for the per-genre title and stock counts of the catalogue.
+ * The counts are kept in memory and moved by every committed change of a book: bookAdded and bookRemoved for whole
+ * books, bookChanged for an edit and stockChanged for a copy borrowed or returned. reconcile corrects them against the
+ * database, which also catches changes made outside this instance.
+ * A write takes a ticket from changeStarting before its first statement and hands it back to changeFinished, in a
+ * finally block, once it has moved the counts, so that reconcile can wait for the writes its query may have seen.
+ */
+
+public interface CatalogueStatisticsService {
+
+    void bookAdded(Genre genre, long quantity);
+    void bookRemoved(Genre genre, long quantity);
+    void bookChanged(Genre oldGenre, long oldQuantity, Genre newGenre, long newQuantity);
+    void stockChanged(Genre genre, long delta);
+    long changeStarting();
+    void changeFinished(long change);
+    void reconcile();
+    CatalogueStatistics statistics();
+    ResponseEntity<ApiResponse<CatalogueStatistics>> getStatistics(UserDetailsImpl currentUser);
+}
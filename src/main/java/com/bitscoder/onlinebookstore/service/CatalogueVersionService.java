@@ -0,0 +1,18 @@
+package com.bitscoder.onlinebookstore.service;
+
+import java.util.Collection;
+
+/**
+ * The CatalogueVersionService interface defines the contract for the version stamps behind the ETags of the book pages.
+ * Every change of a book, once committed, must be reported with bookChanged, which moves both the stamp of the
+ * catalogue and the stamp of that book. The stamps are kept in memory, so they can be read on every request without
+ * touching the database.
+ */
+
+public interface CatalogueVersionService {
+
+    String catalogueTag();
+    String bookTag(String bookId);
+    void bookChanged(String bookId);
+    void booksChanged(Collection<String> bookIds);
+}
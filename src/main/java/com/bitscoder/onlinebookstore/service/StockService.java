@@ -0,0 +1,18 @@
+package com.bitscoder.onlinebookstore.service;
+
+/**
+ * The StockService interface defines the contract for the optional write-behind mode of book stock (lms.stockWriteBehind).
+ * When it is enabled, borrows and returns change the stock in memory and the changes reach the books table in periodic
+ * batches, instead of each one updating the book's row in its own transaction. When it is disabled isEnabled() is false,
+ * the other methods must not be used and the stock is changed in the database directly.
+ */
+
+public interface StockService {
+
+    boolean isEnabled();
+    boolean takeCopy(String bookId);
+    void returnCopy(String bookId);
+    long copiesLeft(String bookId);
+    void flush();
+    void reload(String bookId);
+}
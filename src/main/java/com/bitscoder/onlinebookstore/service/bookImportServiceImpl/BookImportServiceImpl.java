@@ -0,0 +1,297 @@
+package com.bitscoder.onlinebookstore.service.bookImportServiceImpl;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.dto.ApiResponse;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.dto.BookImportReport;
+import com.bitscoder.onlinebookstore.exception.BadRequestException;
+import com.bitscoder.onlinebookstore.exception.UnauthorizedException;
+import com.bitscoder.onlinebookstore.models.Book;
+import com.bitscoder.onlinebookstore.models.User;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.service.BookImportService;
+import com.bitscoder.onlinebookstore.service.BookSearchService;
+import com.bitscoder.onlinebookstore.service.CatalogueStatisticsService;
+import com.bitscoder.onlinebookstore.service.CatalogueVersionService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * The BookImportServiceImpl class is an implementation of the BookImportService interface.
+ * It reads the upload one line at a time, validates each row and buffers at most one chunk of books.
+ * Each chunk is persisted in its own transaction and then flushed and cleared, so Hibernate sends the inserts
+ * as JDBC batches (hibernate.jdbc.batch_size) and the persistence context never grows beyond one chunk.
+ * If a chunk fails in the database, its rows are saved again one per transaction, so the good rows are kept and only
+ * the rows the database refuses are reported as failed.
+ * The books of each committed chunk are added to the search index and the shelf statistics, and move the catalogue version on.
+ */
+@Slf4j
+@Service
+public class BookImportServiceImpl implements BookImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int CSV_COLUMNS = 6;
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final BookSearchService bookSearchService;
+    private final CatalogueVersionService catalogueVersionService;
+    private final CatalogueStatisticsService catalogueStatisticsService;
+    private final int chunkSize;
+
+    public BookImportServiceImpl(EntityManager entityManager,
+                                 PlatformTransactionManager transactionManager,
+                                 ObjectMapper objectMapper,
+                                 BookSearchService bookSearchService,
+                                 CatalogueVersionService catalogueVersionService,
+                                 CatalogueStatisticsService catalogueStatisticsService,
+                                 @Value("${lms.importChunkSize:500}") int chunkSize) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.bookSearchService = bookSearchService;
+        this.catalogueVersionService = catalogueVersionService;
+        this.catalogueStatisticsService = catalogueStatisticsService;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public ResponseEntity<ApiResponse<BookImportReport>> importBooks(InputStream upload, Format format, UserDetailsImpl currentUser) throws IOException {
+        log.info("Importing books in {} format for user: {}", format, currentUser.getUsername());
+        if (currentUser.getRole() != Roles.USER) {
+            throw new UnauthorizedException("Only a User can import books");
+        }
+        BookImportReport report = new BookImportReport();
+        List<PendingRow> chunk = new ArrayList<>(chunkSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(upload, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && format == Format.CSV && isCsvHeader(line))) {
+                    continue;
+                }
+                report.setTotalRows(report.getTotalRows() + 1);
+                try {
+                    BookDto bookDto = format == Format.CSV ? parseCsvRow(line) : parseJsonRow(line);
+                    validate(bookDto);
+                    chunk.add(new PendingRow(lineNumber, bookDto));
+                } catch (BadRequestException e) {
+                    recordError(report, lineNumber, e.getMessage());
+                }
+                if (chunk.size() == chunkSize) {
+                    persistChunk(chunk, currentUser, report);
+                    chunk.clear();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            persistChunk(chunk, currentUser, report);
+        }
+
+        ApiResponse<BookImportReport> apiResponse = new ApiResponse<>(
+                LocalDateTime.now(),
+                UUID.randomUUID().toString(),
+                report.getFailed() == 0,
+                "Imported " + report.getImported() + " of " + report.getTotalRows() + " books for user: " + currentUser.getName(),
+                report
+        );
+        log.info("Imported {} books, {} rows failed", report.getImported(), report.getFailed());
+        return ResponseEntity.ok(apiResponse);
+    }
+
+
+    // HELPER METHODS
+    // a chunk the database refuses is saved again one row per transaction, so only the offending rows are lost
+    private void persistChunk(List<PendingRow> chunk, UserDetailsImpl currentUser, BookImportReport report) {
+        List<Book> books;
+        long change = catalogueStatisticsService.changeStarting();
+        try {
+            try {
+                books = saveRows(chunk, currentUser);
+            } catch (RuntimeException e) {
+                if (chunk.size() == 1) {
+                    recordError(report, chunk.get(0).line(), "Could not be saved: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+                    return;
+                }
+                log.warn("Import chunk starting at line {} failed, saving its rows one by one: {}", chunk.get(0).line(), e.getMessage());
+                for (PendingRow row : chunk) {
+                    persistChunk(List.of(row), currentUser, report);
+                }
+                return;
+            }
+            report.setImported(report.getImported() + chunk.size());
+            bookSearchService.indexBooks(books);
+            catalogueVersionService.booksChanged(books.stream().map(Book::getId).toList());
+            books.forEach(book -> catalogueStatisticsService.bookAdded(book.getGenre(), book.getQuantity()));
+        } finally {
+            catalogueStatisticsService.changeFinished(change);
+        }
+    }
+
+    private List<Book> saveRows(List<PendingRow> rows, UserDetailsImpl currentUser) {
+        List<Book> books = new ArrayList<>(rows.size());
+        transactionTemplate.executeWithoutResult(status -> {
+            User owner = entityManager.getReference(User.class, currentUser.getId());
+            for (PendingRow row : rows) {
+                Book book = convertDtoToEntity(row.bookDto(), owner);
+                entityManager.persist(book);
+                books.add(book);
+            }
+            entityManager.flush();
+            entityManager.clear();
+        });
+        return books;
+    }
+
+    private void recordError(BookImportReport report, long line, String message) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add(new BookImportReport.RowError(line, message));
+        } else {
+            report.setErrorsTruncated(true);
+        }
+    }
+
+    private boolean isCsvHeader(String line) {
+        return line.trim().toLowerCase(Locale.ROOT).startsWith("title");
+    }
+
+    private BookDto parseJsonRow(String line) {
+        try {
+            return objectMapper.readValue(line, BookDto.class);
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException("Invalid JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private BookDto parseCsvRow(String line) {
+        List<String> fields = splitCsvLine(line);
+        if (fields.size() != CSV_COLUMNS) {
+            throw new BadRequestException("Expected " + CSV_COLUMNS + " columns (title,author,isbn,genre,quantity,publicationYear) but found " + fields.size());
+        }
+        BookDto bookDto = new BookDto();
+        bookDto.setTitle(fields.get(0));
+        bookDto.setAuthor(fields.get(1));
+        bookDto.setIsbn(fields.get(2));
+        bookDto.setGenre(parseGenre(fields.get(3)));
+        bookDto.setQuantity(parseQuantity(fields.get(4)));
+        bookDto.setPublicationYear(parsePublicationYear(fields.get(5)));
+        return bookDto;
+    }
+
+    // splits one CSV record, honouring double quoted fields and "" escapes
+    private List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>(CSV_COLUMNS);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private Genre parseGenre(String value) {
+        try {
+            return Genre.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Unknown genre: " + value);
+        }
+    }
+
+    private long parseQuantity(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Quantity is not a number: " + value);
+        }
+    }
+
+    // accepts an ISO date (2022-01-31) or just a year (2022)
+    private LocalDate parsePublicationYear(String value) {
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        try {
+            return trimmed.length() == 4 ? LocalDate.of(Integer.parseInt(trimmed), 1, 1) : LocalDate.parse(trimmed);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new BadRequestException("Invalid publication year: " + value);
+        }
+    }
+
+    private void validate(BookDto bookDto) {
+        if (bookDto.getTitle() == null || bookDto.getTitle().isBlank()) {
+            throw new BadRequestException("Title is required");
+        }
+        if (bookDto.getAuthor() == null || bookDto.getAuthor().isBlank()) {
+            throw new BadRequestException("Author is required");
+        }
+        if (bookDto.getIsbn() == null || bookDto.getIsbn().isBlank()) {
+            throw new BadRequestException("ISBN is required");
+        }
+        if (bookDto.getGenre() == null) {
+            throw new BadRequestException("Genre is required");
+        }
+        if (bookDto.getQuantity() < 0) {
+            throw new BadRequestException("Quantity cannot be negative");
+        }
+    }
+
+    private Book convertDtoToEntity(BookDto bookDto, User user) {
+        Book book = new Book();
+        book.setTitle(bookDto.getTitle());
+        book.setAuthor(bookDto.getAuthor());
+        book.setIsbn(bookDto.getIsbn());
+        book.setGenre(bookDto.getGenre());
+        book.setQuantity(bookDto.getQuantity());
+        book.setPublicationYear(bookDto.getPublicationYear());
+        book.setUser(user);
+        return book;
+    }
+
+    private record PendingRow(long line, BookDto bookDto) {
+    }
+}
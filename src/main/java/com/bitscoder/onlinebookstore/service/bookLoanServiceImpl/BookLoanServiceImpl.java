@@ -0,0 +1,235 @@
+package com.bitscoder.onlinebookstore.service.bookLoanServiceImpl;
+
+import com.bitscoder.onlinebookstore.config.CacheConfig;
+import com.bitscoder.onlinebookstore.dto.ApiResponse;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.exception.BadRequestException;
+import com.bitscoder.onlinebookstore.exception.ResourceNotFoundException;
+import com.bitscoder.onlinebookstore.models.BookLoan;
+import com.bitscoder.onlinebookstore.repository.BookLoanRepository;
+import com.bitscoder.onlinebookstore.repository.BookLoanView;
+import com.bitscoder.onlinebookstore.repository.BookRepository;
+import com.bitscoder.onlinebookstore.repository.BookView;
+import com.bitscoder.onlinebookstore.repository.UserRepository;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.service.BookLoanService;
+import com.bitscoder.onlinebookstore.service.BookSearchService;
+import com.bitscoder.onlinebookstore.service.CatalogueStatisticsService;
+import com.bitscoder.onlinebookstore.service.CatalogueVersionService;
+import com.bitscoder.onlinebookstore.service.StockService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * The BookLoanServiceImpl class is an implementation of the BookLoanService interface.
+ * Stock is never read, changed and written back: a borrow is one conditional UPDATE that only succeeds while a copy
+ * is left (BookRepository.takeCopy), and a return first closes the loan with a conditional UPDATE, so that the same
+ * loan cannot put a copy back twice. Each borrow or return runs in its own short transaction, which holds the book's
+ * row lock for no longer than two statements.
+ * When a title runs out, that is remembered in memory for lms.soldOutTtlMs, so a rush of requests for a sold out best-seller
+ * is turned away without queueing on its row lock; a return on this node clears the mark straight away.
+ * With lms.stockWriteBehind=true the copies are taken from and put back into the StockService instead, and the books
+ * row is left alone: only the loan is written in the transaction, and the stock follows in the next batch.
+ * After each change the book is evicted from the books cache, its stock is refreshed in the search index and its
+ * version stamp in the CatalogueVersionService is moved on, and the copy is counted on or off its shelf in the
+ * CatalogueStatisticsService.
+ */
+@Slf4j
+@Service
+public class BookLoanServiceImpl implements BookLoanService {
+
+    private final BookRepository bookRepository;
+    private final BookLoanRepository bookLoanRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
+    private final BookSearchService bookSearchService;
+    private final StockService stockService;
+    private final CatalogueVersionService catalogueVersionService;
+    private final CatalogueStatisticsService catalogueStatisticsService;
+    private final Cache<String, Boolean> soldOut;
+
+    public BookLoanServiceImpl(BookRepository bookRepository,
+                               BookLoanRepository bookLoanRepository,
+                               UserRepository userRepository,
+                               PlatformTransactionManager transactionManager,
+                               CacheManager cacheManager,
+                               BookSearchService bookSearchService,
+                               StockService stockService,
+                               CatalogueVersionService catalogueVersionService,
+                               CatalogueStatisticsService catalogueStatisticsService,
+                               @Value("${lms.soldOutTtlMs:1000}") long soldOutTtlMs) {
+        this.bookRepository = bookRepository;
+        this.bookLoanRepository = bookLoanRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cacheManager = cacheManager;
+        this.bookSearchService = bookSearchService;
+        this.stockService = stockService;
+        this.catalogueVersionService = catalogueVersionService;
+        this.catalogueStatisticsService = catalogueStatisticsService;
+        this.soldOut = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(soldOutTtlMs))
+                .build();
+    }
+
+    @Override
+    public ResponseEntity<ApiResponse<BookDto.Response>> borrowBook(String bookId, UserDetailsImpl currentUser) {
+        log.info("Borrowing book with id: {} for user: {}", bookId, currentUser.getUsername());
+        if (soldOut.getIfPresent(bookId) != null) {
+            throw new BadRequestException("No copies of book with id: " + bookId + " are left");
+        }
+        BookLoan loan;
+        BookDto.Response bookResponse;
+        long change = catalogueStatisticsService.changeStarting();
+        try {
+            loan = stockService.isEnabled() ? borrowWriteBehind(bookId, currentUser) : borrowDirect(bookId, currentUser);
+            bookResponse = refreshStock(bookId, -1);
+        } finally {
+            catalogueStatisticsService.changeFinished(change);
+        }
+        bookResponse.setBorrowedAt(loan.getBorrowedAt());
+        ApiResponse<BookDto.Response> apiResponse = new ApiResponse<>(
+                LocalDateTime.now(),
+                UUID.randomUUID().toString(),
+                true,
+                "Book with title '" + bookResponse.getTitle() + "' borrowed by user: " + currentUser.getName(),
+                bookResponse
+        );
+        log.info("Borrowed book with id: {}, {} copies left", bookId, bookResponse.getQuantity());
+        return ResponseEntity.ok(apiResponse);
+    }
+
+    @Override
+    public ResponseEntity<ApiResponse<BookDto.Response>> returnBook(String bookId, UserDetailsImpl currentUser) {
+        log.info("Returning book with id: {} for user: {}", bookId, currentUser.getUsername());
+        BookDto.Response bookResponse;
+        long change = catalogueStatisticsService.changeStarting();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<String> openLoans = bookLoanRepository.findOpenLoanIds(bookId, currentUser.getId(), PageRequest.of(0, 1));
+                // a concurrent return of the same loan finds it already closed and must not restore the copy again
+                if (openLoans.isEmpty() || bookLoanRepository.markReturned(openLoans.get(0), LocalDateTime.now()) == 0) {
+                    throw new BadRequestException("Book with id: " + bookId + " is not on loan to user: " + currentUser.getName());
+                }
+                if (!stockService.isEnabled()) {
+                    bookRepository.returnCopy(bookId);
+                }
+            });
+            if (stockService.isEnabled()) {
+                stockService.returnCopy(bookId);
+            }
+            soldOut.invalidate(bookId);
+            bookResponse = refreshStock(bookId, 1);
+        } finally {
+            catalogueStatisticsService.changeFinished(change);
+        }
+        ApiResponse<BookDto.Response> apiResponse = new ApiResponse<>(
+                LocalDateTime.now(),
+                UUID.randomUUID().toString(),
+                true,
+                "Book with title '" + bookResponse.getTitle() + "' returned by user: " + currentUser.getName(),
+                bookResponse
+        );
+        log.info("Returned book with id: {}, {} copies left", bookId, bookResponse.getQuantity());
+        return ResponseEntity.ok(apiResponse);
+    }
+
+    @Override
+    public ResponseEntity<ApiResponse<List<BookDto.Response>>> getBorrowedBooks(UserDetailsImpl currentUser) {
+        log.info("Fetching borrowed books for user: {}", currentUser.getUsername());
+        List<BookDto.Response> bookResponses = bookLoanRepository.findOpenLoansOfUser(currentUser.getId()).stream()
+                .map(this::convertLoanViewToDto)
+                .collect(Collectors.toList());
+        ApiResponse<List<BookDto.Response>> apiResponse = new ApiResponse<>(
+                LocalDateTime.now(),
+                UUID.randomUUID().toString(),
+                true,
+                "Fetched " + bookResponses.size() + " borrowed books for user: " + currentUser.getName(),
+                bookResponses
+        );
+        return ResponseEntity.ok(apiResponse);
+    }
+
+
+    // HELPER METHODS
+    private BookLoan borrowDirect(String bookId, UserDetailsImpl currentUser) {
+        return transactionTemplate.execute(status -> {
+            if (bookRepository.takeCopy(bookId) == 0) {
+                if (!bookRepository.existsById(bookId)) {
+                    throw new ResourceNotFoundException("Book", "id", bookId);
+                }
+                throw outOfStock(bookId);
+            }
+            return saveLoan(bookId, currentUser);
+        });
+    }
+
+    // the copy is reserved in memory first; if the loan cannot be saved it is put back
+    private BookLoan borrowWriteBehind(String bookId, UserDetailsImpl currentUser) {
+        if (!stockService.takeCopy(bookId)) {
+            throw outOfStock(bookId);
+        }
+        try {
+            return transactionTemplate.execute(status -> saveLoan(bookId, currentUser));
+        } catch (RuntimeException e) {
+            stockService.returnCopy(bookId);
+            throw e;
+        }
+    }
+
+    private BookLoan saveLoan(String bookId, UserDetailsImpl currentUser) {
+        BookLoan newLoan = new BookLoan();
+        newLoan.setBook(bookRepository.getReferenceById(bookId));
+        newLoan.setUser(userRepository.getReferenceById(currentUser.getId()));
+        newLoan.setBorrowedAt(LocalDateTime.now());
+        return bookLoanRepository.save(newLoan);
+    }
+
+    private BadRequestException outOfStock(String bookId) {
+        soldOut.put(bookId, Boolean.TRUE);
+        return new BadRequestException("No copies of book with id: " + bookId + " are left");
+    }
+
+    // reads the committed stock once for the response and the search index; the cached copy is evicted rather than
+    // replaced, since concurrent borrowers may read their stock in a different order than they write it
+    private BookDto.Response refreshStock(String bookId, long stockDelta) {
+        cacheManager.getCache(CacheConfig.BOOKS_CACHE).evict(bookId);
+        catalogueVersionService.bookChanged(bookId);
+        BookView book = bookRepository.findViewById(bookId)
+                .orElseThrow(() -> new ResourceNotFoundException("Book", "id", bookId));
+        catalogueStatisticsService.stockChanged(book.getGenre(), stockDelta);
+        BookDto.Response bookResponse = convertViewToDto(book);
+        if (stockService.isEnabled()) {
+            // the books row lags behind until the next flush, the counter does not
+            bookResponse.setQuantity(stockService.copiesLeft(bookId));
+        }
+        bookSearchService.updateQuantity(bookId, bookResponse.getQuantity(), book.getVersion());
+        return bookResponse;
+    }
+
+    private BookDto.Response convertViewToDto(BookView book) {
+        return new BookDto.Response(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getGenre(),
+                book.getPublicationYear(), book.getQuantity(), null, book.getVersion());
+    }
+
+    private BookDto.Response convertLoanViewToDto(BookLoanView loan) {
+        BookDto.Response bookResponse = convertViewToDto(loan);
+        bookResponse.setBorrowedAt(loan.getBorrowedAt());
+        return bookResponse;
+    }
+}
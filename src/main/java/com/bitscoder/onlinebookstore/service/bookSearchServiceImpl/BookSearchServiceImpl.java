@@ -0,0 +1,141 @@
+package com.bitscoder.onlinebookstore.service.bookSearchServiceImpl;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.dto.ApiResponse;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.dto.BookSearchResult;
+import com.bitscoder.onlinebookstore.models.Book;
+import com.bitscoder.onlinebookstore.repository.BookRepository;
+import com.bitscoder.onlinebookstore.repository.BookView;
+import com.bitscoder.onlinebookstore.search.BookSearchIndex;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.service.BookSearchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The BookSearchServiceImpl class is an implementation of the BookSearchService interface.
+ * It owns the BookSearchIndex of the application. The index is rebuilt from the database once the application is ready,
+ * reading the books table in keyset pages so the whole table is never loaded at once, and is then kept up to date by
+ * BookServiceImpl and BookImportServiceImpl after every successful write. Queries never touch the database.
+ */
+@Slf4j
+@Service
+public class BookSearchServiceImpl implements BookSearchService {
+
+    private static final int MAX_SEARCH_RESULTS = 50;
+    private static final int MAX_SUGGESTIONS = 10;
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private final BookRepository bookRepository;
+    private final BookSearchIndex index = new BookSearchIndex();
+
+    public BookSearchServiceImpl(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        log.info("Building the book search index");
+        long started = System.nanoTime();
+        try {
+            index.rebuild(sink -> {
+                String cursor = "";
+                List<BookView> page;
+                do {
+                    page = bookRepository.findPageAfter(cursor, PageRequest.of(0, REBUILD_PAGE_SIZE));
+                    for (BookView book : page) {
+                        sink.accept(convertViewToDto(book));
+                        cursor = book.getId();
+                    }
+                } while (page.size() == REBUILD_PAGE_SIZE);
+            });
+            log.info("Indexed {} books for search in {} ms", index.size(), (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.error("Could not build the book search index, search falls back to the database: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isReady() {
+        return index.isReady();
+    }
+
+    @Override
+    public ResponseEntity<ApiResponse<BookSearchResult>> searchCatalogue(String query, Genre genre, UserDetailsImpl currentUser) {
+        log.info("Searching the catalogue for: '{}' in genre: {} for user: {}", query, genre, currentUser.getUsername());
+        BookSearchResult result = index.search(query, genre, MAX_SEARCH_RESULTS);
+        ApiResponse<BookSearchResult> apiResponse = new ApiResponse<>(
+                LocalDateTime.now(),
+                UUID.randomUUID().toString(),
+                true,
+                "Found " + result.getTotalMatches() + " books for user: " + currentUser.getName(),
+                result
+        );
+        return ResponseEntity.ok(apiResponse);
+    }
+
+    @Override
+    public ResponseEntity<ApiResponse<List<String>>> suggestTitles(String prefix, UserDetailsImpl currentUser) {
+        List<String> titles = index.suggest(prefix, MAX_SUGGESTIONS);
+        ApiResponse<List<String>> apiResponse = new ApiResponse<>(
+                LocalDateTime.now(),
+                UUID.randomUUID().toString(),
+                true,
+                "Found " + titles.size() + " suggestions for user: " + currentUser.getName(),
+                titles
+        );
+        return ResponseEntity.ok(apiResponse);
+    }
+
+    @Override
+    public void indexBook(Book book) {
+        index.index(convertEntityToDto(book));
+    }
+
+    @Override
+    public void indexBooks(Collection<Book> books) {
+        for (Book book : books) {
+            index.index(convertEntityToDto(book));
+        }
+    }
+
+    @Override
+    public void updateQuantity(String id, long quantity, long version) {
+        index.updateQuantity(id, quantity, version);
+    }
+
+    @Override
+    public void removeBook(String id) {
+        index.remove(id);
+    }
+
+
+    // HELPER METHODS
+    private BookDto.Response convertViewToDto(BookView book) {
+        return new BookDto.Response(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getGenre(),
+                book.getPublicationYear(), book.getQuantity(), null, book.getVersion());
+    }
+
+    private BookDto.Response convertEntityToDto(Book book) {
+        BookDto.Response bookResponse = new BookDto.Response();
+        bookResponse.setId(book.getId());
+        bookResponse.setTitle(book.getTitle());
+        bookResponse.setAuthor(book.getAuthor());
+        bookResponse.setIsbn(book.getIsbn());
+        bookResponse.setGenre(book.getGenre());
+        bookResponse.setPublicationYear(book.getPublicationYear());
+        bookResponse.setQuantity(book.getQuantity());
+        bookResponse.setVersion(book.getVersion());
+        return bookResponse;
+    }
+}
@@ -1,62 +1,121 @@
 package com.bitscoder.onlinebookstore.service.bookServiceImpl;
 
+import com.bitscoder.onlinebookstore.config.CacheConfig;
+import com.bitscoder.onlinebookstore.config.ReadFromReplica;
+import com.bitscoder.onlinebookstore.constant.Genre;
 import com.bitscoder.onlinebookstore.constant.Roles;
 import com.bitscoder.onlinebookstore.dto.ApiResponse;
 import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.exception.BadRequestException;
+import com.bitscoder.onlinebookstore.exception.ConflictException;
 import com.bitscoder.onlinebookstore.exception.ResourceNotFoundException;
 import com.bitscoder.onlinebookstore.exception.UnauthorizedException;
 import com.bitscoder.onlinebookstore.models.Book;
 import com.bitscoder.onlinebookstore.models.User;
+import com.bitscoder.onlinebookstore.repository.BookLoanRepository;
 import com.bitscoder.onlinebookstore.repository.BookRepository;
+import com.bitscoder.onlinebookstore.repository.BookView;
 import com.bitscoder.onlinebookstore.repository.UserRepository;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.service.BookSearchService;
 import com.bitscoder.onlinebookstore.service.BookService;
+import com.bitscoder.onlinebookstore.service.CatalogueStatisticsService;
+import com.bitscoder.onlinebookstore.service.CatalogueVersionService;
+import com.bitscoder.onlinebookstore.service.StockService;
+import io.micrometer.core.annotation.Timed;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanWrapper;
 import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.beans.FeatureDescriptor;
-import java.security.Principal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
  * The BookServiceImpl class is an implementation of the BookService interface.
  * It provides methods to manage books in a bookstore, including adding a new book, retrieving all books, retrieving a book by its ID, updating a book's details, and removing a book.
- * It uses a BookRepository to interact with the database and a UserRepository to fetch user details.
- * The methods throw exceptions for invalid operations (like a non-user trying to insert a book) and for resources not found (like a user or a book not found).
+ * It uses a BookRepository to interact with the database; lists and searches read BookView projections, one select each. The acting user comes from the security context as a UserDetailsImpl,
+ * so reads issue no user query and writes only take a UserRepository reference to set the book's owner.
+ * An update must carry the version of the book it was based on. If the book has changed since, including a borrow or
+ * return, the update is refused with a conflict instead of writing the old stock back.
+ * In write-behind mode the pending stock changes are flushed before a book is edited, and its stock counter is reloaded after.
+ * The methods throw exceptions for invalid operations (like a non-user trying to insert a book) and for resources not found (like a book not found).
  * The methods convert DTOs to entities before saving them in the database and convert entities to DTOs before returning them in the response.
+ * Searches only run indexed queries: an exact ISBN lookup, a genre lookup, or a title/author substring match backed by
+ * the trigram indexes, always capped at MAX_SEARCH_RESULTS rows.
+ * Single books are read through the "books" cache; adding and updating a book refresh its entry and removing a book evicts it.
+ * A book is removed in one transaction that locks its row, checks that none of its copies is on loan and deletes its
+ * returned loans along with it.
+ * Pages and searches run in read-only transactions that may be served by a read replica (@ReadFromReplica). A single
+ * book is left out: a cache hit should not take a connection at all, and a miss is read from the primary, since it
+ * fills the books cache, where a copy from a lagging replica would be kept until it expires.
+ * Every successful write is also applied to the in-memory search index of the BookSearchService, and reported to the
+ * CatalogueVersionService so the ETags of the book pages change with it, and to the CatalogueStatisticsService, which
+ * moves the title and stock counts of the book's shelf.
+ * Every method is timed in bookstore.book.service, tagged with the method name.
  */
 @Slf4j
 @Service
+@Timed(value = "bookstore.book.service", description = "Time spent in BookService methods")
 @AllArgsConstructor
 public class BookServiceImpl implements BookService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SEARCH_RESULTS = 50;
+    // trigram indexes cannot narrow down fragments shorter than one trigram
+    private static final int MIN_SEARCH_LENGTH = 3;
+    private static final Pattern ISBN_PATTERN = Pattern.compile("[0-9][0-9-]{8,15}[0-9Xx]");
+
     private final BookRepository bookRepository;
+    private final BookLoanRepository bookLoanRepository;
     private final UserRepository userRepository;
+    private final CacheManager cacheManager;
+    private final BookSearchService bookSearchService;
+    private final StockService stockService;
+    private final CatalogueVersionService catalogueVersionService;
+    private final CatalogueStatisticsService catalogueStatisticsService;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
-    public ResponseEntity<ApiResponse<BookDto.Response>> addNewBookToStore(BookDto bookDto, Principal principal) {
+    public ResponseEntity<ApiResponse<BookDto.Response>> addNewBookToStore(BookDto bookDto, UserDetailsImpl currentUser) {
         log.info("Inserting book with title: {}", bookDto.getTitle());
-        User user = userRepository.findByEmail(principal.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "email", principal.getName()));
-        if (user.getRoles() != Roles.USER) {
+        if (currentUser.getRole() != Roles.USER) {
             throw new UnauthorizedException("Only a User can insert a book");
         }
+        // the owner is only needed as a foreign key, so a reference proxy avoids loading the user row
+        User user = userRepository.getReferenceById(currentUser.getId());
         Book book = convertDtoToEntity(bookDto, user);
         book.setPublicationYear(bookDto.getPublicationYear());
-        bookRepository.save(book);
-        BookDto.Response bookResponse = convertEntityToDto(book);
+        BookDto.Response bookResponse;
+        long change = catalogueStatisticsService.changeStarting();
+        try {
+            bookRepository.save(book);
+            bookResponse = convertEntityToDto(book);
+            bookCache().put(book.getId(), bookResponse);
+            bookSearchService.indexBook(book);
+            catalogueVersionService.bookChanged(book.getId());
+            catalogueStatisticsService.bookAdded(book.getGenre(), book.getQuantity());
+        } finally {
+            catalogueStatisticsService.changeFinished(change);
+        }
         ApiResponse<BookDto.Response> apiResponse = new ApiResponse<>(
                 LocalDateTime.now(),
                 UUID.randomUUID().toString(),
                 true,
-                "Book inserted successfully to "+ bookDto.getGenre()+ " shelve by "+ user.getName(),
+                "Book inserted successfully to "+ bookDto.getGenre()+ " shelve by "+ currentUser.getName(),
                 bookResponse
         );
         log.info("Book inserted successfully with title: {}", bookDto.getTitle());
@@ -64,38 +123,59 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
-    public ResponseEntity<ApiResponse<List<BookDto.Response>>> getAllBooks(Principal principal) {
-        log.info("Fetching all books for user: {}", principal.getName());
-        User user = userRepository.findByEmail(principal.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "email", principal.getName()));
-        List<Book> books = bookRepository.findAll();
+    @ReadFromReplica
+    public ResponseEntity<ApiResponse<BookDto.Page>> getAllBooks(String after, int size, UserDetailsImpl currentUser) {
+        log.info("Fetching books after cursor: {} for user: {}", after, currentUser.getUsername());
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        String cursor = after == null ? "" : after;
+        // fetch one extra row to find out whether there is a next page without a COUNT query
+        List<BookView> books = bookRepository.findPageAfter(cursor, PageRequest.of(0, pageSize + 1));
+        boolean hasNext = books.size() > pageSize;
         List<BookDto.Response> bookResponses = books.stream()
-                .map(this::convertEntityToDto)
+                .limit(pageSize)
+                .map(this::convertViewToDto)
+                .collect(Collectors.toList());
+        String nextCursor = hasNext ? bookResponses.get(bookResponses.size() - 1).getId() : null;
+        ApiResponse<BookDto.Page> apiResponse = new ApiResponse<>(
+                LocalDateTime.now(),
+                UUID.randomUUID().toString(),
+                true,
+                "Fetched all books for user: " + currentUser.getName(),
+                new BookDto.Page(bookResponses, nextCursor, hasNext)
+        );
+        log.info("Fetched {} books for user: {}", bookResponses.size(), currentUser.getUsername());
+        return ResponseEntity.ok(apiResponse);
+    }
+
+    @Override
+    @ReadFromReplica
+    public ResponseEntity<ApiResponse<List<BookDto.Response>>> searchBooks(String query, Genre genre, UserDetailsImpl currentUser) {
+        String term = query == null ? "" : query.trim();
+        log.info("Searching books for: '{}' in genre: {} for user: {}", term, genre, currentUser.getUsername());
+        List<BookView> books = findMatchingBooks(term, genre);
+        List<BookDto.Response> bookResponses = books.stream()
+                .map(this::convertViewToDto)
                 .collect(Collectors.toList());
         ApiResponse<List<BookDto.Response>> apiResponse = new ApiResponse<>(
                 LocalDateTime.now(),
                 UUID.randomUUID().toString(),
                 true,
-                "Fetched all books for user: " + user.getName(),
+                "Found " + bookResponses.size() + " books for user: " + currentUser.getName(),
                 bookResponses
         );
-        log.info("Fetched all books for user: {}", principal.getName());
+        log.info("Found {} books for: '{}'", bookResponses.size(), term);
         return ResponseEntity.ok(apiResponse);
     }
 
     @Override
-    public ResponseEntity<ApiResponse<BookDto.Response>> getBookById(String id, Principal principal) {
+    public ResponseEntity<ApiResponse<BookDto.Response>> getBookById(String id, UserDetailsImpl currentUser) {
         log.info("Fetching book with id: {}", id);
-        User user = userRepository.findByEmail(principal.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "email", principal.getName()));
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Book", "id", id));
-        BookDto.Response bookResponse = convertEntityToDto(book);
+        BookDto.Response bookResponse = findBookResponse(id);
         ApiResponse<BookDto.Response> apiResponse = new ApiResponse<>(
                 LocalDateTime.now(),
                 UUID.randomUUID().toString(),
                 true,
-                "Fetched book with id: " + id + " for user: " + user.getName(),
+                "Fetched book with id: " + id + " for user: " + currentUser.getName(),
                 bookResponse
         );
         log.info("Fetched book with id: {}", id);
@@ -103,29 +183,53 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
-    public ResponseEntity<ApiResponse<BookDto.Response>> updateBook(String id, BookDto bookRequest, Principal principal) {
+    public ResponseEntity<ApiResponse<BookDto.Response>> updateBook(String id, BookDto bookRequest, UserDetailsImpl currentUser) {
         log.info("Updating book with id: {}", id);
-        User user = userRepository.findByEmail(principal.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "email", principal.getName()));
-        if (user.getRoles() != Roles.USER) {
+        if (currentUser.getRole() != Roles.USER) {
             throw new UnauthorizedException("Only a User can update book details");
         }
+        stockService.flush();
         Book book = bookRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Book", "id", id));
+        if (bookRequest.getVersion() == null) {
+            throw new BadRequestException("The version of the book being edited is required");
+        }
+        if (bookRequest.getVersion() != book.getVersion()) {
+            throw new ConflictException("Book with id: " + id + " was changed by someone else, please reload it and try again");
+        }
+        Genre oldGenre = book.getGenre();
+        long oldQuantity = book.getQuantity();
         book.setTitle(bookRequest.getTitle());
         book.setAuthor(bookRequest.getAuthor());
         book.setIsbn(bookRequest.getIsbn());
         book.setGenre(bookRequest.getGenre());
         book.setQuantity(bookRequest.getQuantity());
         book.setPublicationYear(bookRequest.getPublicationYear());
-        book.setUser(user);
-        bookRepository.save(book);
-        BookDto.Response bookResponse = convertEntityToDto(book);
+        book.setUser(userRepository.getReferenceById(currentUser.getId()));
+        BookDto.Response bookResponse;
+        long change = catalogueStatisticsService.changeStarting();
+        try {
+            try {
+                // merge returns the saved copy, which carries the incremented version
+                book = bookRepository.save(book);
+            } catch (ObjectOptimisticLockingFailureException e) {
+                // a copy was borrowed or returned since the book was read; saving would overwrite that stock change
+                throw new ConflictException("Book with id: " + id + " was changed by someone else, please reload it and try again");
+            }
+            stockService.reload(id);
+            bookResponse = convertEntityToDto(book);
+            bookCache().put(id, bookResponse);
+            bookSearchService.indexBook(book);
+            catalogueVersionService.bookChanged(id);
+            catalogueStatisticsService.bookChanged(oldGenre, oldQuantity, book.getGenre(), book.getQuantity());
+        } finally {
+            catalogueStatisticsService.changeFinished(change);
+        }
         ApiResponse<BookDto.Response> apiResponse = new ApiResponse<>(
                 LocalDateTime.now(),
                 UUID.randomUUID().toString(),
                 true,
-                "Updated book with id: " + id + " for user: " + user.getName(),
+                "Updated book with id: " + id + " for user: " + currentUser.getName(),
                 bookResponse
         );
         log.info("Updated book with id: {}", id);
@@ -133,29 +237,98 @@ public class BookServiceImpl implements BookService {
     }
 
     @Override
-    public void removeBook(String id, Principal principal) {
+    public ResponseEntity<ApiResponse<BookDto.Response>> removeBook(String id, UserDetailsImpl currentUser) {
         log.info("Removing book with id: {}", id);
-        User user = userRepository.findByEmail(principal.getName())
-                .orElseThrow(() -> new ResourceNotFoundException("User", "email", principal.getName()));
-        if (user.getRoles() != Roles.USER) {
+        if (currentUser.getRole() != Roles.USER) {
             throw new UnauthorizedException("Only a User can remove a book");
         }
-        Book book = bookRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Book", "id", id));
-        bookRepository.delete(book);
-        ApiResponse<String> apiResponse = new ApiResponse<>(
+        Book book;
+        long change = catalogueStatisticsService.changeStarting();
+        try {
+            book = transactionTemplate.execute(status -> {
+                // the row lock keeps a borrow from opening a loan between the check and the delete
+                Book locked = bookRepository.findForUpdateById(id)
+                        .orElseThrow(() -> new ResourceNotFoundException("Book", "id", id));
+                if (bookLoanRepository.existsByBookIdAndReturnedAtIsNull(id)) {
+                    throw new BadRequestException("Book with id: " + id + " cannot be removed while copies are on loan");
+                }
+                bookLoanRepository.deleteReturnedLoansOfBook(id);
+                bookRepository.delete(locked);
+                return locked;
+            });
+            stockService.reload(id);
+            bookCache().evict(id);
+            bookSearchService.removeBook(id);
+            catalogueVersionService.bookChanged(id);
+            catalogueStatisticsService.bookRemoved(book.getGenre(), book.getQuantity());
+        } finally {
+            catalogueStatisticsService.changeFinished(change);
+        }
+        ApiResponse<BookDto.Response> apiResponse = new ApiResponse<>(
                 LocalDateTime.now(),
                 UUID.randomUUID().toString(),
                 true,
-                "Removed book with id: " + id + " by user: " + user.getName(),
-                "Book removed successfully"
+                "Removed book with id: " + id + " by user: " + currentUser.getName(),
+                convertEntityToDto(book)
         );
         log.info("Removed book with id: {}", id);
-        ResponseEntity.ok(apiResponse);
+        return ResponseEntity.ok(apiResponse);
     }
 
 
     // HELPER METHODS
+    private Cache bookCache() {
+        return cacheManager.getCache(CacheConfig.BOOKS_CACHE);
+    }
+
+    // read-through lookup: served from the books cache when present, otherwise loaded once and cached. The load runs
+    // inside the cache, so a put or evict of the same book by a concurrent write waits for it and is applied after it,
+    // and a copy read before that write can never overwrite the newer one
+    private BookDto.Response findBookResponse(String id) {
+        try {
+            return bookCache().get(id, () -> convertEntityToDto(bookRepository.findById(id)
+                    .orElseThrow(() -> new ResourceNotFoundException("Book", "id", id))));
+        } catch (Cache.ValueRetrievalException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private List<BookView> findMatchingBooks(String term, Genre genre) {
+        PageRequest limit = PageRequest.of(0, MAX_SEARCH_RESULTS);
+        if (term.isEmpty()) {
+            if (genre == null) {
+                throw new BadRequestException("Enter a search term or pick a genre");
+            }
+            return bookRepository.findByGenre(genre, limit);
+        }
+        if (ISBN_PATTERN.matcher(term).matches()) {
+            List<BookView> byIsbn = bookRepository.findByIsbn(term, limit);
+            if (!byIsbn.isEmpty()) {
+                return byIsbn;
+            }
+        }
+        if (term.length() < MIN_SEARCH_LENGTH) {
+            throw new BadRequestException("Search term must be at least " + MIN_SEARCH_LENGTH + " characters");
+        }
+        String pattern = "%" + escapeLike(term.toLowerCase(Locale.ROOT)) + "%";
+        return genre == null
+                ? bookRepository.searchByTitleOrAuthor(pattern, limit)
+                : bookRepository.searchByTitleOrAuthorInGenre(pattern, genre, limit);
+    }
+
+    // user input is matched literally, so LIKE wildcards are escaped with the '!' escape character of the queries
+    private String escapeLike(String term) {
+        return term.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    private BookDto.Response convertViewToDto(BookView book) {
+        return new BookDto.Response(book.getId(), book.getTitle(), book.getAuthor(), book.getIsbn(), book.getGenre(),
+                book.getPublicationYear(), book.getQuantity(), null, book.getVersion());
+    }
+
     private BookDto.Response convertEntityToDto(Book book) {
         BookDto.Response bookResponse = new BookDto.Response();
         bookResponse.setId(book.getId());
@@ -165,6 +338,7 @@ public class BookServiceImpl implements BookService {
         bookResponse.setGenre(book.getGenre());
         bookResponse.setPublicationYear(book.getPublicationYear());
         bookResponse.setQuantity(book.getQuantity());
+        bookResponse.setVersion(book.getVersion());
         return bookResponse;
     }
 
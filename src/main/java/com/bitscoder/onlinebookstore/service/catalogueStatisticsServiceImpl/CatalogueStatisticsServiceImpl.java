@@ -0,0 +1,205 @@
+package com.bitscoder.onlinebookstore.service.catalogueStatisticsServiceImpl;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.dto.ApiResponse;
+import com.bitscoder.onlinebookstore.dto.CatalogueStatistics;
+import com.bitscoder.onlinebookstore.repository.BookRepository;
+import com.bitscoder.onlinebookstore.repository.GenreStockView;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.service.CatalogueStatisticsService;
+import com.bitscoder.onlinebookstore.service.StockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The CatalogueStatisticsServiceImpl class is an implementation of the CatalogueStatisticsService interface.
+ * Every genre has a shelf of two LongAdders, the titles and the copies in stock, in an EnumMap that is filled once and
+ * never changes shape. Changes only add to the adders, so concurrent changes do not contend, and reading the
+ * statistics sums a fixed number of counters without touching the database.
+ * Every lms.catalogueStatsReconcileMs, and once at startup, the counts are compared with a GROUP BY over the books
+ * table and corrected by the difference. A shelf that changed while the query ran is left for the next round, since
+ * the query may or may not have seen that change.
+ * A write moves the counts only after it has committed, so the query can see a write whose counts have not moved yet;
+ * correcting the shelf then would count that write twice. Every write therefore holds a change ticket from before its
+ * statements until after its counts have moved, and after the query the reconcile waits, at most
+ * lms.catalogueStatsSettleMs, for the tickets taken before the query ended. Write-behind stock is flushed after the
+ * first look at the shelves, so a copy taken since the flush moves its shelf before the second look.
+ */
+@Slf4j
+@Service
+public class CatalogueStatisticsServiceImpl implements CatalogueStatisticsService {
+
+    private final BookRepository bookRepository;
+    private final StockService stockService;
+    private final long settleMs;
+    private final Map<Genre, Shelf> shelves = new EnumMap<>(Genre.class);
+    private final AtomicLong changes = new AtomicLong();
+    private final ConcurrentSkipListSet<Long> changesUnderWay = new ConcurrentSkipListSet<>();
+    private volatile LocalDateTime reconciledAt;
+
+    public CatalogueStatisticsServiceImpl(BookRepository bookRepository,
+                                          StockService stockService,
+                                          @Value("${lms.catalogueStatsSettleMs:5000}") long settleMs) {
+        this.bookRepository = bookRepository;
+        this.stockService = stockService;
+        this.settleMs = settleMs;
+        for (Genre genre : Genre.values()) {
+            shelves.put(genre, new Shelf());
+        }
+    }
+
+    @Override
+    public void bookAdded(Genre genre, long quantity) {
+        Shelf shelf = shelf(genre);
+        if (shelf != null) {
+            shelf.titles.increment();
+            shelf.copies.add(quantity);
+        }
+    }
+
+    @Override
+    public void bookRemoved(Genre genre, long quantity) {
+        Shelf shelf = shelf(genre);
+        if (shelf != null) {
+            shelf.titles.decrement();
+            shelf.copies.add(-quantity);
+        }
+    }
+
+    @Override
+    public void bookChanged(Genre oldGenre, long oldQuantity, Genre newGenre, long newQuantity) {
+        bookRemoved(oldGenre, oldQuantity);
+        bookAdded(newGenre, newQuantity);
+    }
+
+    @Override
+    public void stockChanged(Genre genre, long delta) {
+        Shelf shelf = shelf(genre);
+        if (shelf != null) {
+            shelf.copies.add(delta);
+        }
+    }
+
+    @Override
+    public long changeStarting() {
+        long change = changes.incrementAndGet();
+        changesUnderWay.add(change);
+        return change;
+    }
+
+    @Override
+    public void changeFinished(long change) {
+        changesUnderWay.remove(change);
+    }
+
+    @Scheduled(fixedDelayString = "${lms.catalogueStatsReconcileMs:300000}")
+    @Override
+    public void reconcile() {
+        Map<Genre, CatalogueStatistics.Shelf> before = snapshot();
+        // with write-behind stock the books table lags behind the counters until the pending changes are flushed
+        stockService.flush();
+        Map<Genre, CatalogueStatistics.Shelf> counted = new EnumMap<>(Genre.class);
+        for (GenreStockView view : bookRepository.countByGenre()) {
+            if (view.getGenre() == null) {
+                continue;
+            }
+            counted.put(view.getGenre(), new CatalogueStatistics.Shelf(view.getTitles(), view.getCopies()));
+        }
+        if (!awaitChangesUpTo(changes.get())) {
+            log.info("Writes were still under way after {} ms, leaving the statistics for the next reconcile", settleMs);
+            return;
+        }
+        Map<Genre, CatalogueStatistics.Shelf> after = snapshot();
+        int corrected = 0;
+        for (Genre genre : Genre.values()) {
+            CatalogueStatistics.Shelf expected = counted.getOrDefault(genre, new CatalogueStatistics.Shelf(0, 0));
+            CatalogueStatistics.Shelf current = after.get(genre);
+            if (!current.equals(before.get(genre)) || current.equals(expected)) {
+                continue;
+            }
+            Shelf shelf = shelves.get(genre);
+            shelf.titles.add(expected.getTitles() - current.getTitles());
+            shelf.copies.add(expected.getCopies() - current.getCopies());
+            corrected++;
+        }
+        reconciledAt = LocalDateTime.now();
+        if (corrected > 0) {
+            log.info("Corrected the statistics of {} shelves against the database", corrected);
+        }
+    }
+
+    @Override
+    public CatalogueStatistics statistics() {
+        Map<Genre, CatalogueStatistics.Shelf> snapshot = snapshot();
+        long titles = 0;
+        long copies = 0;
+        for (CatalogueStatistics.Shelf shelf : snapshot.values()) {
+            titles += shelf.getTitles();
+            copies += shelf.getCopies();
+        }
+        return new CatalogueStatistics(snapshot, titles, copies, reconciledAt);
+    }
+
+    @Override
+    public ResponseEntity<ApiResponse<CatalogueStatistics>> getStatistics(UserDetailsImpl currentUser) {
+        CatalogueStatistics statistics = statistics();
+        ApiResponse<CatalogueStatistics> apiResponse = new ApiResponse<>(
+                LocalDateTime.now(),
+                UUID.randomUUID().toString(),
+                true,
+                "Fetched catalogue statistics for user: " + currentUser.getName(),
+                statistics
+        );
+        return ResponseEntity.ok(apiResponse);
+    }
+
+
+    // HELPER METHODS
+    // books without a genre are on no shelf
+    private Shelf shelf(Genre genre) {
+        return genre == null ? null : shelves.get(genre);
+    }
+
+    // waits until every change up to the given ticket has moved its counts, or the settle time has passed
+    private boolean awaitChangesUpTo(long last) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settleMs);
+        while (true) {
+            Long oldest = changesUnderWay.ceiling(0L);
+            if (oldest == null || oldest > last) {
+                return true;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private Map<Genre, CatalogueStatistics.Shelf> snapshot() {
+        Map<Genre, CatalogueStatistics.Shelf> snapshot = new EnumMap<>(Genre.class);
+        shelves.forEach((genre, shelf) -> snapshot.put(genre, new CatalogueStatistics.Shelf(shelf.titles.sum(), shelf.copies.sum())));
+        return snapshot;
+    }
+
+    private static final class Shelf {
+        private final LongAdder titles = new LongAdder();
+        private final LongAdder copies = new LongAdder();
+    }
+}
@@ -0,0 +1,75 @@
+package com.bitscoder.onlinebookstore.service.catalogueVersionServiceImpl;
+
+import com.bitscoder.onlinebookstore.service.CatalogueVersionService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The CatalogueVersionServiceImpl class is an implementation of the CatalogueVersionService interface.
+ * The catalogue version is a counter that goes up on every committed change of a book. A changed book remembers the
+ * catalogue version of its last change as its own stamp, so its page keeps its ETag while other books change.
+ * At most lms.bookVersionsMaxSize stamps are kept; a book whose stamp was evicted, or that has not changed since startup,
+ * gets the highest stamp evicted so far, which is never lower than any stamp it could have had before.
+ * The tags start with a random id of this instance, so they do not match tags handed out before a restart, and with
+ * the current period of lms.catalogueTagTtlMs: changes made through another instance are not seen here, so a tag is
+ * only trusted for as long as the books cache would keep the same data.
+ */
+@Service
+public class CatalogueVersionServiceImpl implements CatalogueVersionService {
+
+    private final String instanceId = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private final AtomicLong catalogueVersion = new AtomicLong();
+    private final AtomicLong evictedVersion = new AtomicLong();
+    private final Cache<String, Long> bookVersions;
+    private final long tagTtlMs;
+
+    public CatalogueVersionServiceImpl(@Value("${lms.bookVersionsMaxSize:100000}") long maxSize,
+                                       @Value("${lms.catalogueTagTtlMs:600000}") long tagTtlMs) {
+        this.tagTtlMs = tagTtlMs;
+        // the eviction listener runs before the stamp disappears from the cache, so a reader always finds one of them
+        this.bookVersions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .<String, Long>evictionListener((bookId, version, cause) -> evictedVersion.accumulateAndGet(version, Math::max))
+                .build();
+    }
+
+    @Override
+    public String catalogueTag() {
+        return tag(catalogueVersion.get());
+    }
+
+    @Override
+    public String bookTag(String bookId) {
+        Long version = bookVersions.getIfPresent(bookId);
+        return tag(version != null ? version : evictedVersion.get());
+    }
+
+    @Override
+    public void bookChanged(String bookId) {
+        long version = catalogueVersion.incrementAndGet();
+        bookVersions.asMap().merge(bookId, version, Math::max);
+    }
+
+    @Override
+    public void booksChanged(Collection<String> bookIds) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        long version = catalogueVersion.incrementAndGet();
+        for (String bookId : bookIds) {
+            bookVersions.asMap().merge(bookId, version, Math::max);
+        }
+    }
+
+
+    // HELPER METHODS
+    private String tag(long version) {
+        return instanceId + "-" + System.currentTimeMillis() / tagTtlMs + "-" + version;
+    }
+}
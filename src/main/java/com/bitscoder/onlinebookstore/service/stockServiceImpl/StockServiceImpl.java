@@ -0,0 +1,281 @@
+package com.bitscoder.onlinebookstore.service.stockServiceImpl;
+
+import com.bitscoder.onlinebookstore.config.CacheConfig;
+import com.bitscoder.onlinebookstore.exception.ResourceNotFoundException;
+import com.bitscoder.onlinebookstore.repository.BookRepository;
+import com.bitscoder.onlinebookstore.repository.BookView;
+import com.bitscoder.onlinebookstore.service.CatalogueVersionService;
+import com.bitscoder.onlinebookstore.service.StockService;
+import com.bitscoder.onlinebookstore.stock.StockJournal;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The StockServiceImpl class is an implementation of the StockService interface.
+ * Each book that is borrowed gets an in-memory counter, seeded from the books table: the copies left, changed with
+ * compare-and-set so the stock can never be oversold, and a LongAdder of the change not yet written to the database.
+ * Every change is appended to the StockJournal before it is acknowledged.
+ * Every lms.stockFlushIntervalMs the journal is rotated and the pending changes are drained under the write lock, so
+ * a closed segment holds exactly the changes of one batch. The batch is written with one JDBC batch of
+ * "quantity = quantity + delta" updates, together with a StockJournalFlush row naming the segment, and the segment is
+ * then deleted. A batch that fails is retried on the next flush. On startup the segments left by a crash are applied
+ * the same way, skipping the one already recorded as flushed.
+ * The counters are only correct while this application is the only writer of the stock, so write-behind is meant for
+ * a single instance. Edits of a book in BookServiceImpl flush the pending changes first and reload the counter after.
+ */
+@Slf4j
+@Service
+public class StockServiceImpl implements StockService {
+
+    private final BookRepository bookRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheManager cacheManager;
+    private final CatalogueVersionService catalogueVersionService;
+    private final boolean enabled;
+    private final Path journalDirectory;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    // changes take the read lock, so they run concurrently; rotating the journal and draining the counters takes the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Deque<Batch> unflushed = new ArrayDeque<>();
+    private StockJournal journal;
+
+    public StockServiceImpl(BookRepository bookRepository,
+                            JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            CacheManager cacheManager,
+                            CatalogueVersionService catalogueVersionService,
+                            @Value("${lms.stockWriteBehind:false}") boolean enabled,
+                            @Value("${lms.stockJournalDir:stock-journal}") String journalDirectory) {
+        this.bookRepository = bookRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.cacheManager = cacheManager;
+        this.catalogueVersionService = catalogueVersionService;
+        this.enabled = enabled;
+        this.journalDirectory = Path.of(journalDirectory);
+    }
+
+    // segments left by a crash are applied even when write-behind has been switched off since
+    @PostConstruct
+    public void recover() throws IOException {
+        if (!enabled && !Files.isDirectory(journalDirectory)) {
+            return;
+        }
+        journal = new StockJournal(journalDirectory);
+        for (String segment : journal.segments()) {
+            Map<String, Long> deltas = journal.read(segment);
+            log.info("Recovering {} stock changes from journal segment {}", deltas.size(), segment);
+            apply(new Batch(segment, deltas));
+            journal.delete(segment);
+        }
+        if (enabled) {
+            journal.open();
+            log.info("Write-behind stock enabled, journal in {}", journalDirectory.toAbsolutePath());
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public boolean takeCopy(String bookId) {
+        lock.readLock().lock();
+        try {
+            AtomicLong copiesLeft = counter(bookId).copiesLeft;
+            long left;
+            do {
+                left = copiesLeft.get();
+                if (left <= 0) {
+                    return false;
+                }
+            } while (!copiesLeft.compareAndSet(left, left - 1));
+            record(bookId, -1);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void returnCopy(String bookId) {
+        lock.readLock().lock();
+        try {
+            counter(bookId).copiesLeft.incrementAndGet();
+            record(bookId, 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long copiesLeft(String bookId) {
+        lock.readLock().lock();
+        try {
+            return counter(bookId).copiesLeft.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${lms.stockFlushIntervalMs:200}")
+    @Override
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                String segment = journal.rotate();
+                if (segment != null) {
+                    unflushed.add(new Batch(segment, drain()));
+                }
+            } catch (IOException e) {
+                log.error("Could not rotate the stock journal: {}", e.getMessage());
+            } finally {
+                lock.writeLock().unlock();
+            }
+            while (!unflushed.isEmpty()) {
+                Batch batch = unflushed.peek();
+                apply(batch);
+                journal.delete(batch.segment());
+                unflushed.poll();
+            }
+        } catch (RuntimeException | IOException e) {
+            log.error("Could not flush stock changes, retrying on the next flush: {}", e.getMessage());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // called after a book was edited or removed: the pending changes still apply on top of the new quantity
+    @Override
+    public void reload(String bookId) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            Counter counter = counters.get(bookId);
+            if (counter != null) {
+                long quantity = bookRepository.findViewById(bookId).map(BookView::getQuantity).orElse(0L);
+                counter.copiesLeft.set(quantity + counter.pending.sum());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        flush();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+
+    // HELPER METHODS
+    // seeded under the read lock, so a reload() that starts after a seed from the old quantity always sees the counter;
+    // the book is read outside computeIfAbsent, which would hold the map's bin monitor (and pin a virtual thread) during the query
+    private Counter counter(String bookId) {
+        Counter counter = counters.get(bookId);
+        if (counter != null) {
+            return counter;
+        }
+        BookView book = bookRepository.findViewById(bookId)
+                .orElseThrow(() -> new ResourceNotFoundException("Book", "id", bookId));
+        Counter seeded = counters.putIfAbsent(bookId, new Counter(book.getQuantity()));
+        return seeded != null ? seeded : counters.get(bookId);
+    }
+
+    // journaled before the change is counted, so every counted change can be recovered
+    private void record(String bookId, long delta) {
+        Counter counter = counters.get(bookId);
+        try {
+            journal.append(bookId, delta);
+        } catch (IOException e) {
+            counter.copiesLeft.addAndGet(-delta);
+            throw new UncheckedIOException("Could not journal the stock change of book " + bookId, e);
+        }
+        counter.pending.add(delta);
+    }
+
+    private Map<String, Long> drain() {
+        Map<String, Long> deltas = new HashMap<>();
+        counters.forEach((bookId, counter) -> {
+            long delta = counter.pending.sumThenReset();
+            if (delta != 0) {
+                deltas.put(bookId, delta);
+            }
+        });
+        return deltas;
+    }
+
+    private void apply(Batch batch) {
+        List<Object[]> updates = new ArrayList<>(batch.deltas().size());
+        batch.deltas().forEach((bookId, delta) -> updates.add(new Object[]{delta, bookId}));
+        transactionTemplate.executeWithoutResult(status -> {
+            Integer applied = jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM stock_journal_flushes WHERE id = ?", Integer.class, batch.segment());
+            if (applied != null && applied > 0) {
+                return;
+            }
+            jdbcTemplate.batchUpdate("UPDATE books SET quantity = quantity + ?, version = version + 1 WHERE id = ?", updates);
+            // the earlier segments are all applied and deleted, so only this one has to be remembered
+            jdbcTemplate.update("DELETE FROM stock_journal_flushes WHERE id < ?", batch.segment());
+            jdbcTemplate.update("INSERT INTO stock_journal_flushes (id, flushed_at) VALUES (?, ?)",
+                    batch.segment(), Timestamp.valueOf(LocalDateTime.now()));
+        });
+        Cache books = cacheManager.getCache(CacheConfig.BOOKS_CACHE);
+        batch.deltas().keySet().forEach(books::evict);
+        // the pages show the quantity of the books table, which has only now caught up
+        catalogueVersionService.booksChanged(batch.deltas().keySet());
+        log.debug("Flushed stock changes of {} books from journal segment {}", updates.size(), batch.segment());
+    }
+
+    private static final class Counter {
+        private final AtomicLong copiesLeft;
+        private final LongAdder pending = new LongAdder();
+
+        private Counter(long copiesLeft) {
+            this.copiesLeft = new AtomicLong(copiesLeft);
+        }
+    }
+
+    private record Batch(String segment, Map<String, Long> deltas) {
+    }
+}
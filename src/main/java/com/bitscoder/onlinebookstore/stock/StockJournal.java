@@ -0,0 +1,136 @@
+package com.bitscoder.onlinebookstore.stock;
+
+import com.bitscoder.onlinebookstore.util.TimeOrderedId;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * An append-only journal of stock changes that have not reached the database yet.
+ * Every change is appended as one "bookId,delta" line to the current segment file before it is acknowledged, so the
+ * changes survive a crash of the application. rotate() closes the current segment and starts a new one; once the
+ * changes of a closed segment are in the database the segment is deleted. Segment names are time-ordered ids, so the
+ * segments left behind by a crash sort in the order they were written.
+ * The journal is written by the operating system's page cache: it survives the application dying, but a segment is
+ * only forced to the disk when it is rotated, so a power loss can lose the changes of the current segment.
+ * append() may be called from many threads; rotate() must not run concurrently with append().
+ */
+public class StockJournal implements Closeable {
+
+    private static final String PREFIX = "Stock";
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    // a lock rather than synchronized, which would pin a virtual thread to its carrier for the duration of the write
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private FileChannel channel;
+    private String segment;
+    private volatile boolean dirty;
+
+    public StockJournal(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * The closed segments found in the directory, oldest first. The segment currently written to is not included.
+     */
+    public List<String> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+                    .map(name -> name.substring(0, name.length() - SUFFIX.length()))
+                    .filter(name -> !name.equals(segment))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * The net change per book recorded in a segment. A torn last line, left by a crash in the middle of a write, is skipped.
+     */
+    public Map<String, Long> read(String segment) throws IOException {
+        Map<String, Long> deltas = new LinkedHashMap<>();
+        String content = Files.readString(file(segment), StandardCharsets.UTF_8);
+        int end = content.lastIndexOf('\n');
+        if (end < 0) {
+            return deltas;
+        }
+        for (String line : content.substring(0, end).split("\n")) {
+            int comma = line.indexOf(',');
+            if (comma > 0) {
+                deltas.merge(line.substring(0, comma), Long.parseLong(line.substring(comma + 1)), Long::sum);
+            }
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+        return deltas;
+    }
+
+    /**
+     * Starts the first segment. Until then nothing can be appended.
+     */
+    public void open() throws IOException {
+        segment = TimeOrderedId.next(PREFIX);
+        channel = FileChannel.open(file(segment), StandardOpenOption.CREATE_NEW, StandardOpenOption.APPEND);
+        dirty = false;
+    }
+
+    public void append(String bookId, long delta) throws IOException {
+        ByteBuffer record = ByteBuffer.wrap((bookId + "," + delta + "\n").getBytes(StandardCharsets.UTF_8));
+        // one record per write call, so records of concurrent appenders never interleave
+        writeLock.lock();
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        dirty = true;
+    }
+
+    /**
+     * Forces the current segment to the disk, closes it and starts a new one.
+     * Returns the closed segment, or null (and keeps writing to the current one) when nothing was appended to it.
+     */
+    public String rotate() throws IOException {
+        if (!dirty) {
+            return null;
+        }
+        String closed = segment;
+        channel.force(false);
+        channel.close();
+        open();
+        return closed;
+    }
+
+    public void delete(String segment) throws IOException {
+        Files.deleteIfExists(file(segment));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        channel.close();
+        if (!dirty) {
+            delete(segment);
+        }
+    }
+
+    private Path file(String segment) {
+        return directory.resolve(segment + SUFFIX);
+    }
+}
@@ -0,0 +1,86 @@
+package com.bitscoder.onlinebookstore.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The BloomFilter class is a thread-safe Bloom filter of strings.
+ * mightContain never answers false for a string that was added; for a string that was not added it answers true with
+ * about the false positive probability the filter was sized for, as long as no more than expectedInsertions strings
+ * are added (beyond that the probability grows gradually).
+ * The bits live in an AtomicLongArray and are set with compare-and-set, so concurrent adds and lookups need no lock.
+ * The hashNumber bit positions of a string are derived from two 64 bit hashes of its UTF-8 bytes (double hashing).
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        long n = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64);
+        this.words = new AtomicLongArray(Math.max(1, words));
+        this.bitCount = (long) this.words.length() * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    public void add(String value) {
+        long[] hashes = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(hashes, i);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = words.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!words.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long[] hashes = hash(value);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = index(hashes, i);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitSize() {
+        return bitCount;
+    }
+
+
+    // HELPER METHODS
+    private long index(long[] hashes, int i) {
+        return Math.floorMod(hashes[0] + i * hashes[1], bitCount);
+    }
+
+    // two independent FNV-1a style hashes of the bytes, each finished with the murmur3 64 bit mixer
+    private static long[] hash(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long h1 = 0xcbf29ce484222325L;
+        long h2 = 0x84222325cbf29ce4L;
+        for (byte b : bytes) {
+            h1 = (h1 ^ (b & 0xff)) * 0x100000001b3L;
+            h2 = (h2 ^ (b & 0xff)) * 0x9e3779b97f4a7c15L;
+        }
+        return new long[]{mix(h1), mix(h2) | 1};
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,53 @@
+package com.bitscoder.onlinebookstore.util;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The TimeOrderedId class generates the primary keys of books and users, in the spirit of ULID.
+ * An id is a type prefix ("Book", "User") followed by a 128 bit value written as 26 Crockford base32 characters:
+ * 48 bits of Unix time in milliseconds and a 16 bit sequence, then a 64 bit node id picked at random when the class loads.
+ * Ids therefore sort by creation time, so inserts append to the right edge of the primary key index instead of
+ * splitting random pages. Within one JVM the time and sequence part never repeats and never goes backwards
+ * (a compare-and-set loop, no lock), and ids from different JVMs differ in their node id.
+ * If more than 65536 ids are drawn within one millisecond, the sequence carries into the timestamp,
+ * which only lets the ids run slightly ahead of the clock.
+ */
+public final class TimeOrderedId {
+
+    public static final int LENGTH = 26;
+
+    private static final char[] ENCODING = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int SEQUENCE_BITS = 16;
+    private static final long NODE_ID = new SecureRandom().nextLong();
+    private static final AtomicLong LAST_TIME_AND_SEQUENCE = new AtomicLong();
+
+    private TimeOrderedId() {
+    }
+
+    public static String next(String prefix) {
+        long now = System.currentTimeMillis() << SEQUENCE_BITS;
+        long timeAndSequence = LAST_TIME_AND_SEQUENCE.updateAndGet(last -> Math.max(now, last + 1));
+        return encode(prefix, timeAndSequence, NODE_ID);
+    }
+
+    /**
+     * True when the id has the prefix and the length of an id from this generator; the truncated random ids used
+     * before are shorter.
+     */
+    public static boolean isTimeOrdered(String id, String prefix) {
+        return id != null && id.length() == prefix.length() + LENGTH && id.startsWith(prefix);
+    }
+
+    static String encode(String prefix, long high, long low) {
+        char[] chars = new char[prefix.length() + LENGTH];
+        prefix.getChars(0, prefix.length(), chars, 0);
+        // 26 characters of 5 bits hold the 128 bits, the first character only carrying the top 3
+        for (int i = chars.length - 1; i >= prefix.length(); i--) {
+            chars[i] = ENCODING[(int) (low & 31)];
+            low = (low >>> 5) | (high << 59);
+            high >>>= 5;
+        }
+        return new String(chars);
+    }
+}
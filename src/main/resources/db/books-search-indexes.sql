@@ -0,0 +1,6 @@
+-- Trigram indexes for case-insensitive substring search on books.title and books.author.
+-- They serve "lower(title) LIKE '%term%'" queries, which a b-tree index cannot.
+-- Applied at startup by SearchIndexInitializer when the database is PostgreSQL; safe to re-run.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS idx_books_title_trgm ON books USING gin (lower(title) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_books_author_trgm ON books USING gin (lower(author) gin_trgm_ops);
@@ -0,0 +1,133 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.dto.UserRegistrationRequest;
+import com.bitscoder.onlinebookstore.models.User;
+import com.bitscoder.onlinebookstore.repository.UserRepository;
+import com.bitscoder.onlinebookstore.security.jwt.JwtUtils;
+import com.bitscoder.onlinebookstore.security.services.AuthService;
+import com.bitscoder.onlinebookstore.security.services.PrincipalCache;
+import com.bitscoder.onlinebookstore.security.services.TakenUserNames;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * Registration against an embedded database, counting the statements it sends.
+ * Runs outside a test transaction so that each registration commits, and the unique constraints fire, as in production.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({AuthService.class, TakenUserNames.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AuthServiceRegistrationTest {
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private TakenUserNames takenUserNames;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockBean
+    private AuthenticationManager authenticationManager;
+
+    @MockBean
+    private JwtUtils jwtUtils;
+
+    @MockBean
+    private PrincipalCache principalCache;
+
+    @MockBean
+    private PasswordEncoder passwordEncoder;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setup() {
+        Mockito.when(passwordEncoder.encode(any())).thenReturn("hashed");
+        User existing = new User();
+        existing.setName("Existing");
+        existing.setEmail("existing@test.com");
+        existing.setRoles(Roles.USER);
+        userRepository.save(existing);
+        takenUserNames.load();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Test that a fresh registration is a single insert")
+    void testFreshRegistration_SingleStatement() {
+        UserRegistrationRequest.Response response = authService.register(request("Newcomer", "newcomer@test.com"));
+
+        assertTrue(response.isStatus());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertTrue(userRepository.findByEmail("newcomer@test.com").isPresent());
+    }
+
+    @Test
+    @DisplayName("Test that a taken name or email is refused with one select and nothing is inserted")
+    void testTakenNameOrEmail() {
+        ResponseStatusException name = assertThrows(ResponseStatusException.class,
+                () -> authService.register(request("Existing", "other@test.com")));
+        assertEquals("Username is already taken!", name.getReason());
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        ResponseStatusException email = assertThrows(ResponseStatusException.class,
+                () -> authService.register(request("Other", "existing@test.com")));
+        assertEquals("Email Address already in use!", email.getReason());
+        assertEquals(1, userRepository.count());
+    }
+
+    @Test
+    @DisplayName("Test that a clash the filter has not seen is caught by the unique constraint with the same message")
+    void testClashUnknownToFilter() {
+        User elsewhere = new User();
+        elsewhere.setName("Elsewhere");
+        elsewhere.setEmail("elsewhere@test.com");
+        elsewhere.setRoles(Roles.USER);
+        userRepository.save(elsewhere);
+
+        ResponseStatusException email = assertThrows(ResponseStatusException.class,
+                () -> authService.register(request("Someone", "elsewhere@test.com")));
+        assertEquals("Email Address already in use!", email.getReason());
+        assertEquals(2, userRepository.count());
+    }
+
+    private UserRegistrationRequest request(String name, String email) {
+        UserRegistrationRequest request = new UserRegistrationRequest();
+        request.setName(name);
+        request.setEmail(email);
+        request.setPassword("secret");
+        request.setConfirmPassword("secret");
+        request.setRole(Roles.USER);
+        return request;
+    }
+}
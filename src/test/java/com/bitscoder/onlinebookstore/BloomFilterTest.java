@@ -0,0 +1,29 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.util.BloomFilter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    @Test
+    @DisplayName("Test that added values are always found and absent ones rarely are")
+    void testNoFalseNegativesAndFewFalsePositives() {
+        BloomFilter filter = new BloomFilter(100_000, 0.01);
+        for (int i = 0; i < 100_000; i++) {
+            filter.add("reader" + i + "@test.com");
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(filter.mightContain("reader" + i + "@test.com"));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("stranger" + i + "@test.com")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, falsePositives + " false positives in 100000");
+    }
+}
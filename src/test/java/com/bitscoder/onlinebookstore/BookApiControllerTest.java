@@ -0,0 +1,131 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.controller.BookApiController;
+import com.bitscoder.onlinebookstore.dto.ApiResponse;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.exception.GlobalExceptionHandler;
+import com.bitscoder.onlinebookstore.exception.ResourceNotFoundException;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.service.BookSearchService;
+import com.bitscoder.onlinebookstore.service.BookService;
+import com.bitscoder.onlinebookstore.service.CatalogueStatisticsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.endsWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class BookApiControllerTest {
+
+    private final BookService bookService = mock(BookService.class);
+    private final BookSearchService bookSearchService = mock(BookSearchService.class);
+    private final CatalogueStatisticsService catalogueStatisticsService = mock(CatalogueStatisticsService.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new BookApiController(bookService, bookSearchService,
+                        catalogueStatisticsService, objectMapper))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                .build();
+
+        List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority(Roles.USER.name()));
+        UserDetailsImpl user = new UserDetailsImpl("User01", "Reader", "reader@bookstore.com", "secret", Roles.USER, authorities);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, authorities));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("Test that the export writes every keyset page into one JSON array")
+    void testExportStreamsAllPages() throws Exception {
+        when(bookService.getAllBooks(isNull(), eq(100), any()))
+                .thenReturn(ok(new BookDto.Page(List.of(book("Book1"), book("Book2")), "Book2", true)));
+        when(bookService.getAllBooks(eq("Book2"), eq(100), any()))
+                .thenReturn(ok(new BookDto.Page(List.of(book("Book3")), null, false)));
+
+        mockMvc.perform(get("/api/books/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[2].id").value("Book3"));
+    }
+
+    @Test
+    @DisplayName("Test that a created book is answered with 201 and its location")
+    void testAddBook() throws Exception {
+        when(bookService.addNewBookToStore(any(), any())).thenReturn(ok(book("Book1")));
+
+        mockMvc.perform(post("/api/books")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\":\"Title\",\"author\":\"Author\",\"isbn\":\"978-0-00-000000-0\",\"genre\":\"FICTION\",\"quantity\":3}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", endsWith("/api/books/Book1")))
+                .andExpect(jsonPath("$.data.id").value("Book1"));
+    }
+
+    @Test
+    @DisplayName("Test that a missing book is answered with a JSON 404")
+    void testGetMissingBook() throws Exception {
+        when(bookService.getBookById(eq("Book9"), any())).thenThrow(new ResourceNotFoundException("Book", "id", "Book9"));
+
+        mockMvc.perform(get("/api/books/Book9"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("ResourceNotFound"));
+    }
+
+    @Test
+    @DisplayName("Test that search falls back to the database while the index is being built")
+    void testSearchBeforeIndexIsReady() throws Exception {
+        when(bookSearchService.isReady()).thenReturn(false);
+        when(bookService.searchBooks(eq("title"), isNull(), any())).thenReturn(ok(List.of(book("Book1"))));
+
+        mockMvc.perform(get("/api/books/search").param("q", "title"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.totalMatches").value(1))
+                .andExpect(jsonPath("$.data.books[0].id").value("Book1"));
+    }
+
+
+    // HELPER METHODS
+    private static <T> ResponseEntity<ApiResponse<T>> ok(T data) {
+        return ResponseEntity.ok(new ApiResponse<>(LocalDateTime.now(), UUID.randomUUID().toString(), true, "OK", data));
+    }
+
+    private static BookDto.Response book(String id) {
+        return new BookDto.Response(id, "Title", "Author", "978-0-00-000000-0", Genre.FICTION,
+                LocalDate.of(2020, 1, 1), 3, null, 0L);
+    }
+}
@@ -0,0 +1,191 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.dto.BookImportReport;
+import com.bitscoder.onlinebookstore.models.Book;
+import com.bitscoder.onlinebookstore.models.User;
+import com.bitscoder.onlinebookstore.repository.BookRepository;
+import com.bitscoder.onlinebookstore.repository.UserRepository;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.service.BookImportService;
+import com.bitscoder.onlinebookstore.service.BookSearchService;
+import com.bitscoder.onlinebookstore.service.CatalogueStatisticsService;
+import com.bitscoder.onlinebookstore.service.CatalogueVersionService;
+import com.bitscoder.onlinebookstore.service.bookImportServiceImpl.BookImportServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+
+/**
+ * Bulk imports against an embedded database, three rows to a chunk, outside a test transaction so that each chunk
+ * commits on its own as in production.
+ */
+@DataJpaTest(properties = "lms.importChunkSize=3")
+@Import(BookImportServiceImpl.class)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookImportServiceTest {
+
+    @Autowired
+    private BookImportService bookImportService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private BookSearchService bookSearchService;
+
+    @MockBean
+    private CatalogueVersionService catalogueVersionService;
+
+    @MockBean
+    private CatalogueStatisticsService catalogueStatisticsService;
+
+    private UserDetailsImpl importer;
+
+    @BeforeEach
+    void setup() {
+        User user = new User();
+        user.setName("Importer");
+        user.setEmail("importer@test.com");
+        user.setRoles(Roles.USER);
+        importer = UserDetailsImpl.build(userRepository.save(user));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Test that quoted CSV fields keep their commas and escaped quotes")
+    void testCsvQuotes() throws IOException {
+        BookImportReport report = importCsv("""
+                title,author,isbn,genre,quantity,publicationYear
+                "Eats, Shoots & Leaves","Lynne ""L."" Truss",978-1-86197-612-3,fiction,3,2003
+                Plain Title,Plain Author,978-0-00-000000-0,java, 1 ,2020-05-01
+                """);
+
+        assertEquals(2, report.getImported());
+        assertEquals(0, report.getFailed());
+        Book quoted = bookRepository.findAll().stream()
+                .filter(book -> book.getIsbn().equals("978-1-86197-612-3"))
+                .findFirst().orElseThrow();
+        assertEquals("Eats, Shoots & Leaves", quoted.getTitle());
+        assertEquals("Lynne \"L.\" Truss", quoted.getAuthor());
+        assertEquals(Genre.FICTION, quoted.getGenre());
+        assertEquals(LocalDate.of(2003, 1, 1), quoted.getPublicationYear());
+    }
+
+    @Test
+    @DisplayName("Test that an upper-case CSV header and a lower-case genre are read the same in any default locale")
+    void testCsvHeaderIgnoresLocale() throws IOException {
+        Locale defaultLocale = Locale.getDefault();
+        // in Turkish I lower-cases to a dotless i and i upper-cases to a dotted I, so neither TITLE nor fiction would match
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            BookImportReport report = importCsv("""
+                    TITLE,AUTHOR,ISBN,GENRE,QUANTITY,PUBLICATIONYEAR
+                    Istanbul,Orhan Pamuk,978-1-4000-3388-0,fiction,2,2003
+                    """);
+
+            assertEquals(1, report.getTotalRows());
+            assertEquals(1, report.getImported());
+            assertEquals(Genre.FICTION, bookRepository.findAll().get(0).getGenre());
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    @DisplayName("Test that JSON lines are imported and a malformed line is reported with its line number")
+    void testJsonLines() throws IOException {
+        String upload = """
+                {"title":"First","author":"Author","isbn":"1","genre":"DRAMA","quantity":2,"publicationYear":"2019-01-01"}
+                {"title":"Second",
+                {"title":"Third","author":"Author","isbn":"3","genre":"HISTORY","quantity":1}
+                """;
+
+        BookImportReport report = bookImportService.importBooks(stream(upload), BookImportService.Format.JSON_LINES, importer)
+                .getBody().getData();
+
+        assertEquals(3, report.getTotalRows());
+        assertEquals(2, report.getImported());
+        assertEquals(1, report.getFailed());
+        assertEquals(2, report.getErrors().get(0).getLine());
+        assertEquals(2, bookRepository.count());
+    }
+
+    @Test
+    @DisplayName("Test that a row the database refuses fails alone and the rest of its chunk is saved")
+    void testFailedChunkIsRetriedRowByRow() throws IOException {
+        StringBuilder upload = new StringBuilder();
+        for (int i = 1; i <= 7; i++) {
+            // line 5 validates but is too long for the title column
+            String title = i == 5 ? "x".repeat(300) : "Book " + i;
+            upload.append(title).append(",Author,isbn-").append(i).append(",fiction,1,2020\n");
+        }
+
+        BookImportReport report = importCsv(upload.toString());
+
+        assertEquals(7, report.getTotalRows());
+        assertEquals(6, report.getImported());
+        assertEquals(1, report.getFailed());
+        assertEquals(5, report.getErrors().get(0).getLine());
+        assertEquals(6, bookRepository.count());
+        // chunks of lines 1-3 and 7, plus lines 4 and 6 saved one by one
+        Mockito.verify(bookSearchService, Mockito.times(4)).indexBooks(any());
+        Mockito.verify(catalogueStatisticsService, Mockito.times(6)).bookAdded(any(Genre.class), anyLong());
+    }
+
+    @Test
+    @DisplayName("Test that only the first errors are reported once there are too many")
+    void testReportedErrorsAreTruncated() throws IOException {
+        StringBuilder upload = new StringBuilder();
+        for (int i = 0; i < 150; i++) {
+            upload.append("Book,Author,isbn,no-such-genre,1,2020\n");
+        }
+
+        BookImportReport report = importCsv(upload.toString());
+
+        assertEquals(150, report.getFailed());
+        assertEquals(100, report.getErrors().size());
+        assertTrue(report.isErrorsTruncated());
+        assertEquals(0, bookRepository.count());
+    }
+
+
+    // HELPER METHODS
+    private BookImportReport importCsv(String upload) throws IOException {
+        return bookImportService.importBooks(stream(upload), BookImportService.Format.CSV, importer).getBody().getData();
+    }
+
+    private static ByteArrayInputStream stream(String upload) {
+        return new ByteArrayInputStream(upload.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,181 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.config.CacheConfig;
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.exception.BadRequestException;
+import com.bitscoder.onlinebookstore.models.Book;
+import com.bitscoder.onlinebookstore.models.User;
+import com.bitscoder.onlinebookstore.repository.BookLoanRepository;
+import com.bitscoder.onlinebookstore.repository.BookRepository;
+import com.bitscoder.onlinebookstore.repository.UserRepository;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.service.BookLoanService;
+import com.bitscoder.onlinebookstore.service.BookSearchService;
+import com.bitscoder.onlinebookstore.service.StockService;
+import com.bitscoder.onlinebookstore.service.bookLoanServiceImpl.BookLoanServiceImpl;
+import com.bitscoder.onlinebookstore.service.catalogueStatisticsServiceImpl.CatalogueStatisticsServiceImpl;
+import com.bitscoder.onlinebookstore.service.catalogueVersionServiceImpl.CatalogueVersionServiceImpl;
+import com.bitscoder.onlinebookstore.service.stockServiceImpl.StockServiceImpl;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many users borrowing and returning the same hot title at once, against an embedded database.
+ * Runs outside a test transaction so that every borrow and return commits on its own, as in production.
+ */
+@DataJpaTest
+@Import({BookLoanServiceImpl.class, StockServiceImpl.class, CatalogueVersionServiceImpl.class,
+        CatalogueStatisticsServiceImpl.class, CacheConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookLoanStressTest {
+
+    static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 50;
+    static final int COPIES = 100;
+
+    @Autowired
+    private BookLoanService bookLoanService;
+
+    @Autowired
+    StockService stockService;
+
+    @Autowired
+    BookRepository bookRepository;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private BookSearchService bookSearchService;
+
+    final List<UserDetailsImpl> users = new ArrayList<>();
+    String bookId;
+
+    @BeforeEach
+    void setup() {
+        for (int i = 0; i < THREADS; i++) {
+            User user = new User();
+            user.setName("Reader " + i);
+            user.setEmail("reader" + i + "@test.com");
+            user.setRoles(Roles.USER);
+            users.add(UserDetailsImpl.build(userRepository.save(user)));
+        }
+        Book book = new Book();
+        book.setTitle("Best Seller");
+        book.setAuthor("Famous Author");
+        book.setIsbn("978-0-00-000000-0");
+        book.setGenre(Genre.FICTION);
+        book.setPublicationYear(LocalDate.of(2024, 1, 1));
+        book.setQuantity(COPIES);
+        bookId = bookRepository.save(book).getId();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        bookLoanRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Test that concurrent borrowers never oversell and concurrent returns restore every copy")
+    void testConcurrentBorrowAndReturn() throws Exception {
+        AtomicInteger borrowed = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        long started = System.nanoTime();
+        runConcurrently(user -> {
+            for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                try {
+                    bookLoanService.borrowBook(bookId, user);
+                    borrowed.incrementAndGet();
+                } catch (BadRequestException e) {
+                    refused.incrementAndGet();
+                }
+            }
+        });
+        long borrowNanos = System.nanoTime() - started;
+        stockService.flush();
+
+        assertEquals(COPIES, borrowed.get());
+        assertEquals(THREADS * ATTEMPTS_PER_THREAD - COPIES, refused.get());
+        assertEquals(0, bookRepository.findById(bookId).orElseThrow().getQuantity());
+        assertEquals(COPIES, bookLoanRepository.count());
+
+        AtomicInteger returned = new AtomicInteger();
+        started = System.nanoTime();
+        runConcurrently(user -> {
+            // every thread also tries to return the same loans twice; the second attempt must be refused
+            for (BookDto.Response ignored : bookLoanService.getBorrowedBooks(user).getBody().getData()) {
+                bookLoanService.returnBook(bookId, user);
+                returned.incrementAndGet();
+            }
+            assertThrows(BadRequestException.class, () -> bookLoanService.returnBook(bookId, user));
+        });
+        long returnNanos = System.nanoTime() - started;
+        stockService.flush();
+
+        assertEquals(COPIES, returned.get());
+        assertEquals(COPIES, bookRepository.findById(bookId).orElseThrow().getQuantity());
+        System.out.printf("%s, hot title, %d threads: %d borrow attempts in %d ms (%.0f/s), %d returns in %d ms (%.0f/s)%n",
+                stockService.isEnabled() ? "Write-behind" : "Direct", THREADS, THREADS * ATTEMPTS_PER_THREAD, borrowNanos / 1_000_000, THREADS * ATTEMPTS_PER_THREAD * 1e9 / borrowNanos,
+                COPIES, returnNanos / 1_000_000, COPIES * 1e9 / returnNanos);
+    }
+
+    @Test
+    @DisplayName("Test that an edit based on a stale read does not overwrite a borrow")
+    void testStaleUpdateIsRejected() {
+        Book staleCopy = bookRepository.findById(bookId).orElseThrow();
+        bookLoanService.borrowBook(bookId, users.get(0));
+        stockService.flush();
+
+        staleCopy.setQuantity(500);
+        assertThrows(Exception.class, () -> bookRepository.save(staleCopy));
+        assertEquals(COPIES - 1, bookRepository.findById(bookId).orElseThrow().getQuantity());
+    }
+
+    void runConcurrently(ThrowingConsumer<UserDetailsImpl> work) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (UserDetailsImpl user : users) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                work.accept(user);
+                return null;
+            }));
+        }
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    interface ThrowingConsumer<T> {
+        void accept(T value) throws Exception;
+    }
+}
@@ -0,0 +1,56 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.service.BookLoanService;
+import com.bitscoder.onlinebookstore.service.CatalogueVersionService;
+import com.bitscoder.onlinebookstore.service.stockServiceImpl.StockServiceImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The same borrow and return load as BookLoanStressTest with write-behind stock, plus recovery of the journal after a crash.
+ */
+@TestPropertySource(properties = {"lms.stockWriteBehind=true", "lms.stockJournalDir=target/stock-journal-test"})
+class BookLoanWriteBehindStressTest extends BookLoanStressTest {
+
+    @Autowired
+    private BookLoanService bookLoanService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private CatalogueVersionService catalogueVersionService;
+
+    @Test
+    @DisplayName("Test that journaled stock changes are applied exactly once after a crash")
+    void testJournalRecovery() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            bookLoanService.borrowBook(bookId, users.get(i));
+        }
+        assertEquals(COPIES, bookRepository.findById(bookId).orElseThrow().getQuantity());
+
+        // a new instance over the same journal, as after a restart that never flushed
+        StockServiceImpl restarted = new StockServiceImpl(bookRepository, jdbcTemplate, transactionManager, cacheManager,
+                catalogueVersionService, true, "target/stock-journal-test");
+        restarted.recover();
+        restarted.shutdown();
+        assertEquals(COPIES - 3, bookRepository.findById(bookId).orElseThrow().getQuantity());
+
+        // the crashed instance's own flush of the same segment must not apply it a second time
+        stockService.flush();
+        assertEquals(COPIES - 3, bookRepository.findById(bookId).orElseThrow().getQuantity());
+    }
+}
@@ -0,0 +1,118 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.models.Book;
+import com.bitscoder.onlinebookstore.models.User;
+import com.bitscoder.onlinebookstore.repository.BookRepository;
+import com.bitscoder.onlinebookstore.repository.BookView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class BookRepositoryTest {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setup() {
+        for (int u = 0; u < 3; u++) {
+            User user = new User();
+            user.setName("User " + u);
+            user.setEmail("user" + u + "@test.com");
+            user.setRoles(Roles.USER);
+            entityManager.persist(user);
+            for (int b = 0; b < 4; b++) {
+                Book book = new Book();
+                book.setTitle("Title " + u + b);
+                book.setAuthor("Author " + u);
+                book.setIsbn("isbn-" + u + b);
+                book.setGenre(Genre.FICTION);
+                book.setPublicationYear(LocalDate.of(2020, 1, 1));
+                book.setQuantity(b);
+                book.setUser(user);
+                entityManager.persist(book);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    @DisplayName("Test that a page of books with different owners is read with a single select")
+    void testFindPageAfter_SingleStatement() {
+        List<BookView> page = bookRepository.findPageAfter("", PageRequest.of(0, 20));
+
+        assertEquals(12, page.size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    @DisplayName("Test that following the cursor visits every book once, in id order")
+    void testFindPageAfter_WalksAllPages() {
+        List<String> seen = new ArrayList<>();
+        String cursor = "";
+        List<BookView> page;
+        do {
+            page = bookRepository.findPageAfter(cursor, PageRequest.of(0, 5));
+            page.forEach(book -> seen.add(book.getId()));
+            if (!page.isEmpty()) {
+                cursor = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == 5);
+
+        assertEquals(12, seen.size());
+        assertEquals(seen.stream().sorted().toList(), seen);
+        assertEquals(12, new HashSet<>(seen).size());
+    }
+
+    @Test
+    @DisplayName("Test that loading a book does not load its owner")
+    void testFindById_OwnerIsLazy() {
+        String id = bookRepository.findPageAfter("", PageRequest.of(0, 1)).get(0).getId();
+        statistics.clear();
+
+        Book book = bookRepository.findById(id).orElseThrow();
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(1, statistics.getEntityLoadCount());
+        assertNotNull(book.getUser());
+    }
+
+    @Test
+    @DisplayName("Test the escaped substring search")
+    void testSearchByTitleOrAuthor() {
+        List<BookView> hits = bookRepository.searchByTitleOrAuthor("%author 1%", PageRequest.of(0, 50));
+
+        assertEquals(4, hits.size());
+        assertEquals("Title 10", hits.get(0).getTitle());
+        assertTrue(bookRepository.searchByTitleOrAuthor("%!%%", PageRequest.of(0, 50)).isEmpty());
+    }
+}
@@ -0,0 +1,84 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.dto.BookSearchResult;
+import com.bitscoder.onlinebookstore.search.BookSearchIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSearchIndexTest {
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void setup() {
+        index = new BookSearchIndex();
+        index.rebuild(sink -> {
+            sink.accept(book("Book1", "Effective Java", "Joshua Bloch", Genre.JAVA));
+            sink.accept(book("Book2", "Java Concurrency in Practice", "Brian Goetz", Genre.JAVA));
+            sink.accept(book("Book3", "Fluent Python", "Luciano Ramalho", Genre.PYTHON));
+            sink.accept(book("Book4", "Cien años de soledad", "Gabriel García Márquez", Genre.FICTION));
+        });
+    }
+
+    @Test
+    @DisplayName("Test that title matches rank above author matches and facets count every genre")
+    void testSearch_RankedWithFacets() {
+        index.index(book("Book5", "Bloch on Design", "Java Team", Genre.SOFTWARE_PROGRAMMING));
+
+        BookSearchResult result = index.search("java", null, 10);
+
+        assertEquals(3, result.getTotalMatches());
+        assertEquals("Book1", result.getBooks().get(0).getId());
+        assertEquals("Book5", result.getBooks().get(2).getId());
+        assertEquals(2L, result.getGenreFacets().get(Genre.JAVA));
+        assertEquals(1L, result.getGenreFacets().get(Genre.SOFTWARE_PROGRAMMING));
+    }
+
+    @Test
+    @DisplayName("Test that a genre filter narrows the hits but not the facets")
+    void testSearch_GenreFilter() {
+        index.index(book("Book5", "Bloch on Design", "Java Team", Genre.SOFTWARE_PROGRAMMING));
+
+        BookSearchResult result = index.search("java", Genre.SOFTWARE_PROGRAMMING, 10);
+
+        assertEquals(1, result.getTotalMatches());
+        assertEquals("Book5", result.getBooks().get(0).getId());
+        assertEquals(2, result.getGenreFacets().size());
+    }
+
+    @Test
+    @DisplayName("Test that typos, accents and partial words still match")
+    void testSearch_TypoAccentAndPrefix() {
+        assertEquals("Book3", index.search("flunet", null, 10).getBooks().get(0).getId());
+        assertEquals("Book4", index.search("garcia marquez", null, 10).getBooks().get(0).getId());
+        assertEquals(List.of("Java Concurrency in Practice"), index.suggest("java concur", 5));
+    }
+
+    @Test
+    @DisplayName("Test that updated and removed books are reflected immediately")
+    void testIncrementalUpdates() {
+        index.index(book("Book3", "Python Cookbook", "David Beazley", Genre.PYTHON));
+        index.remove("Book1");
+
+        assertEquals(0, index.search("fluent", null, 10).getTotalMatches());
+        assertEquals("Book3", index.search("cookbook", null, 10).getBooks().get(0).getId());
+        assertEquals(1, index.search("java", null, 10).getTotalMatches());
+        assertEquals(3, index.size());
+    }
+
+    private BookDto.Response book(String id, String title, String author, Genre genre) {
+        BookDto.Response book = new BookDto.Response();
+        book.setId(id);
+        book.setTitle(title);
+        book.setAuthor(author);
+        book.setGenre(genre);
+        return book;
+    }
+}
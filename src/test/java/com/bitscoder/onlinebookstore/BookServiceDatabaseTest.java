@@ -0,0 +1,149 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.config.CacheConfig;
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.exception.BadRequestException;
+import com.bitscoder.onlinebookstore.exception.ConflictException;
+import com.bitscoder.onlinebookstore.models.Book;
+import com.bitscoder.onlinebookstore.models.User;
+import com.bitscoder.onlinebookstore.repository.BookLoanRepository;
+import com.bitscoder.onlinebookstore.repository.BookRepository;
+import com.bitscoder.onlinebookstore.repository.UserRepository;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.service.BookLoanService;
+import com.bitscoder.onlinebookstore.service.BookSearchService;
+import com.bitscoder.onlinebookstore.service.BookService;
+import com.bitscoder.onlinebookstore.service.bookLoanServiceImpl.BookLoanServiceImpl;
+import com.bitscoder.onlinebookstore.service.bookServiceImpl.BookServiceImpl;
+import com.bitscoder.onlinebookstore.service.catalogueStatisticsServiceImpl.CatalogueStatisticsServiceImpl;
+import com.bitscoder.onlinebookstore.service.catalogueVersionServiceImpl.CatalogueVersionServiceImpl;
+import com.bitscoder.onlinebookstore.service.stockServiceImpl.StockServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Editing and removing books against an embedded database, outside a test transaction, so that every write commits
+ * on its own as in production.
+ */
+@DataJpaTest
+@Import({BookServiceImpl.class, BookLoanServiceImpl.class, StockServiceImpl.class, CatalogueVersionServiceImpl.class,
+        CatalogueStatisticsServiceImpl.class, CacheConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookServiceDatabaseTest {
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookLoanService bookLoanService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookLoanRepository bookLoanRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private BookSearchService bookSearchService;
+
+    private UserDetailsImpl reader;
+    private String bookId;
+
+    @BeforeEach
+    void setup() {
+        User user = new User();
+        user.setName("Reader");
+        user.setEmail("reader@test.com");
+        user.setRoles(Roles.USER);
+        reader = UserDetailsImpl.build(userRepository.save(user));
+        Book book = new Book();
+        book.setTitle("Old Title");
+        book.setAuthor("Author");
+        book.setIsbn("978-0-00-000000-0");
+        book.setGenre(Genre.HISTORY);
+        book.setPublicationYear(LocalDate.of(2001, 1, 1));
+        book.setQuantity(2);
+        bookId = bookRepository.save(book).getId();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        bookLoanRepository.deleteAll();
+        bookRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    @DisplayName("Test that an edit based on the current version is saved")
+    void testUpdateBook() {
+        long version = bookService.getBookById(bookId, reader).getBody().getData().getVersion();
+
+        bookService.updateBook(bookId, edit(version), reader);
+
+        Book book = bookRepository.findById(bookId).orElseThrow();
+        assertEquals("New Title", book.getTitle());
+        assertEquals(2, book.getQuantity());
+    }
+
+    @Test
+    @DisplayName("Test that an edit form opened before a borrow cannot write the old stock back")
+    void testStaleUpdateIsRefused() {
+        long version = bookService.getBookById(bookId, reader).getBody().getData().getVersion();
+        bookLoanService.borrowBook(bookId, reader);
+
+        assertThrows(ConflictException.class, () -> bookService.updateBook(bookId, edit(version), reader));
+        assertThrows(BadRequestException.class, () -> bookService.updateBook(bookId, edit(null), reader));
+
+        Book book = bookRepository.findById(bookId).orElseThrow();
+        assertEquals("Old Title", book.getTitle());
+        assertEquals(1, book.getQuantity());
+    }
+
+    @Test
+    @DisplayName("Test that a book with returned loans is removed together with its loan history")
+    void testRemoveBookWithReturnedLoans() {
+        bookLoanService.borrowBook(bookId, reader);
+        bookLoanService.returnBook(bookId, reader);
+        assertEquals(1, bookLoanRepository.count());
+
+        bookService.removeBook(bookId, reader);
+
+        assertFalse(bookRepository.existsById(bookId));
+        assertEquals(0, bookLoanRepository.count());
+    }
+
+    @Test
+    @DisplayName("Test that a book with a copy on loan is not removed")
+    void testRemoveBookOnLoan() {
+        bookLoanService.borrowBook(bookId, reader);
+
+        assertThrows(BadRequestException.class, () -> bookService.removeBook(bookId, reader));
+
+        assertTrue(bookRepository.existsById(bookId));
+        assertEquals(1, bookLoanRepository.count());
+    }
+
+
+    // HELPER METHODS
+    // the form as it was filled in, with the stock shown when it was opened
+    private static BookDto edit(Long version) {
+        return new BookDto("New Title", "Author", "978-0-00-000000-0", Genre.HISTORY, 2, LocalDate.of(2001, 1, 1), version);
+    }
+}
@@ -1,72 +1,107 @@
 package com.bitscoder.onlinebookstore;
 
+import com.bitscoder.onlinebookstore.config.CacheConfig;
 import com.bitscoder.onlinebookstore.constant.Genre;
 import com.bitscoder.onlinebookstore.constant.Roles;
 import com.bitscoder.onlinebookstore.dto.ApiResponse;
 import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.exception.BadRequestException;
 import com.bitscoder.onlinebookstore.exception.ResourceNotFoundException;
 import com.bitscoder.onlinebookstore.exception.UnauthorizedException;
 import com.bitscoder.onlinebookstore.models.Book;
 import com.bitscoder.onlinebookstore.models.User;
+import com.bitscoder.onlinebookstore.repository.BookLoanRepository;
 import com.bitscoder.onlinebookstore.repository.BookRepository;
+import com.bitscoder.onlinebookstore.repository.BookView;
 import com.bitscoder.onlinebookstore.repository.UserRepository;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.service.BookSearchService;
+import com.bitscoder.onlinebookstore.service.CatalogueStatisticsService;
+import com.bitscoder.onlinebookstore.service.CatalogueVersionService;
+import com.bitscoder.onlinebookstore.service.StockService;
 import com.bitscoder.onlinebookstore.service.bookServiceImpl.BookServiceImpl;
-import org.junit.Test;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
-import org.junit.runner.RunWith;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
-import org.mockito.MockitoAnnotations;
-import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.security.Principal;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-
-import static org.junit.Assert.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
-@RunWith(MockitoJUnitRunner.class)
+@ExtendWith(MockitoExtension.class)
 public class BookServiceImplTest {
     @Mock
     private BookRepository bookRepository;
 
+    @Mock
+    private BookLoanRepository bookLoanRepository;
+
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private BookSearchService bookSearchService;
+
+    @Mock
+    private StockService stockService;
+
+    @Mock
+    private CatalogueVersionService catalogueVersionService;
+
+    @Mock
+    private CatalogueStatisticsService catalogueStatisticsService;
+
+    @Spy
+    private CacheManager cacheManager = new CacheConfig().cacheManager(100, 600_000);
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(Mockito.mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private BookServiceImpl bookService;
 
-    @BeforeEach
-    public void setup() {
-        MockitoAnnotations.initMocks(this);
-    }
+    private static final ProjectionFactory PROJECTIONS = new SpelAwareProxyProjectionFactory();
 
     @Test
     @DisplayName("Test to add book to store by User")
     public void testAddNewBookToStore() {
         // Create a new BookDto object
-        BookDto bookDto = new BookDto("Test Book", "Test Author", "123-456-789", Genre.FICTION, 10, LocalDate.of(2022, 1, 1));
-
-        // Mock the Principal
-        Principal principal = Mockito.mock(Principal.class);
-        Mockito.when(principal.getName()).thenReturn("test@test.com");
+        BookDto bookDto = new BookDto("Test Book", "Test Author", "123-456-789", Genre.FICTION, 10, LocalDate.of(2022, 1, 1), null);
 
-        // Create a new User object and mock the UserRepository
+        // Create a new User object and build its UserDetailsImpl
         User user = new User();
         user.setEmail("test@test.com");
         user.setName("Test User");
         user.setRoles(Roles.USER);
-        Mockito.when(userRepository.findByEmail(principal.getName())).thenReturn(Optional.of(user));
+        UserDetailsImpl currentUser = UserDetailsImpl.build(user);
+        Mockito.when(userRepository.getReferenceById(user.getId())).thenReturn(user);
 
         // Create a new Book object and mock the BookRepository
         Book book = new Book();
@@ -80,7 +115,7 @@ public class BookServiceImplTest {
         Mockito.when(bookRepository.save(any(Book.class))).thenReturn(book);
 
         // Call the method under test and check the response
-        ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.addNewBookToStore(bookDto, principal);
+        ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.addNewBookToStore(bookDto, currentUser);
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
@@ -92,38 +127,30 @@ public class BookServiceImplTest {
     @DisplayName("Test to add book to store by non user")
     public void testAddNewBookToStore_NotAUser() {
         // Creating a new BookDto object
-        BookDto bookDto = new BookDto("Test Book", "Test Author", "123-456-789", Genre.FICTION, 10, LocalDate.of(2022, 1, 1));
+        BookDto bookDto = new BookDto("Test Book", "Test Author", "123-456-789", Genre.FICTION, 10, LocalDate.of(2022, 1, 1), null);
 
-        // Mocking the Principal
-        Principal principal = Mockito.mock(Principal.class);
-        Mockito.when(principal.getName()).thenReturn("test@test.com");
-
-        // Creating a new User object with a different role and mock the UserRepository
+        // Creating a new User object with a different role and build its UserDetailsImpl
         User user = new User();
         user.setEmail("test@test.com");
         user.setName("Test User");
         user.setRoles(Roles.NOT_ADMIN); // Setting a different role here
-        Mockito.when(userRepository.findByEmail(principal.getName())).thenReturn(Optional.of(user));
+        UserDetailsImpl currentUser = UserDetailsImpl.build(user);
 
         // Expect an UnauthorizedException to be thrown
         assertThrows(UnauthorizedException.class, () -> {
-            bookService.addNewBookToStore(bookDto, principal);
+            bookService.addNewBookToStore(bookDto, currentUser);
         });
     }
 
     @Test
     @DisplayName("Test to get all books")
     public void testGetAllBooks() {
-        // Mocking the Principal
-        Principal principal = Mockito.mock(Principal.class);
-        Mockito.when(principal.getName()).thenReturn("test@test.com");
-
-        // Creating a new User object and mock the UserRepository
+        // Creating a new User object and build its UserDetailsImpl
         User user = new User();
         user.setEmail("test@test.com");
         user.setName("Test User");
         user.setRoles(Roles.USER);
-        Mockito.when(userRepository.findByEmail(principal.getName())).thenReturn(Optional.of(user));
+        UserDetailsImpl currentUser = UserDetailsImpl.build(user);
 
         // Creating a list of Book objects and mock the BookRepository
         List<Book> books = new ArrayList<>();
@@ -131,88 +158,273 @@ public class BookServiceImplTest {
         Book book2 = new Book("Book1123","Test Book 2", "Test Author 2", "987-654-321", Genre.DRAMA, LocalDate.of(2021, 1, 1), 8, user);
         books.add(book1);
         books.add(book2);
-        Mockito.when(bookRepository.findAll()).thenReturn(books);
+        Mockito.when(bookRepository.findPageAfter(anyString(), any(Pageable.class))).thenReturn(views(books));
 
         // Calling the method under test and check the response
-        ResponseEntity<ApiResponse<List<BookDto.Response>>> response = bookService.getAllBooks(principal);
+        ResponseEntity<ApiResponse<BookDto.Page>> response = bookService.getAllBooks(null, 20, currentUser);
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals("Fetched all books for user: Test User", response.getBody().getMessage());
-        assertEquals(2, response.getBody().getData().size());
+        assertEquals(2, response.getBody().getData().getBooks().size());
+        assertFalse(response.getBody().getData().isHasNext());
+
+        // reads take the user from the security context and never query the users table
+        Mockito.verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("Test that a full page of books returns a cursor for the next page")
+    public void testGetAllBooks_HasNextPage() {
+        User user = new User();
+        user.setEmail("test@test.com");
+        user.setName("Test User");
+        user.setRoles(Roles.USER);
+        UserDetailsImpl currentUser = UserDetailsImpl.build(user);
+
+        // The repository returns one row more than the requested page size
+        List<Book> books = new ArrayList<>();
+        books.add(new Book("Book1", "Test Book 1", "Test Author 1", "123-456-789", Genre.FICTION, LocalDate.of(2022, 1, 1), 7, user));
+        books.add(new Book("Book2", "Test Book 2", "Test Author 2", "987-654-321", Genre.DRAMA, LocalDate.of(2021, 1, 1), 8, user));
+        books.add(new Book("Book3", "Test Book 3", "Test Author 3", "555-555-555", Genre.JAVA, LocalDate.of(2020, 1, 1), 9, user));
+        Mockito.when(bookRepository.findPageAfter(anyString(), any(Pageable.class))).thenReturn(views(books));
+
+        ResponseEntity<ApiResponse<BookDto.Page>> response = bookService.getAllBooks("Book0", 2, currentUser);
+
+        BookDto.Page page = response.getBody().getData();
+        assertEquals(2, page.getBooks().size());
+        assertTrue(page.isHasNext());
+        assertEquals("Book2", page.getNextCursor());
+        // one row more than the page is asked for, so that no COUNT query is needed
+        Mockito.verify(bookRepository).findPageAfter("Book0", PageRequest.of(0, 3));
     }
 
     @Test
     @DisplayName("Test to get book by id")
     public void testGetBookById() {
-        // Mocking the Principal
-        Principal principal = Mockito.mock(Principal.class);
-        Mockito.when(principal.getName()).thenReturn("test@test.com");
-
-        // Creating a new User object and mock the UserRepository
+        // Creating a new User object and build its UserDetailsImpl
         User user = new User();
         user.setEmail("test@test.com");
         user.setName("Test User");
         user.setRoles(Roles.USER);
-        Mockito.when(userRepository.findByEmail(principal.getName())).thenReturn(Optional.of(user));
+        UserDetailsImpl currentUser = UserDetailsImpl.build(user);
 
         Book book = new Book("BookLL45MN", "Test Book", "Test Author", "123-456-789", Genre.FICTION, LocalDate.of(2022, 1, 1), 10, user);
         Mockito.when(bookRepository.findById(anyString())).thenReturn(Optional.of(book));
 
-        ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.getBookById(book.getId(), principal);
+        ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.getBookById(book.getId(), currentUser);
 
         assertNotNull(response);
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals("Fetched book with id: " + book.getId() + " for user: Test User", response.getBody().getMessage());
+        Mockito.verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("Test that a book fetched twice is served from the cache the second time")
+    public void testGetBookById_Cached() {
+        User user = new User();
+        user.setEmail("test@test.com");
+        user.setName("Test User");
+        user.setRoles(Roles.USER);
+        UserDetailsImpl currentUser = UserDetailsImpl.build(user);
+
+        Book book = new Book("BookC4CHE", "Test Book", "Test Author", "123-456-789", Genre.FICTION, LocalDate.of(2022, 1, 1), 10, user);
+        Mockito.when(bookRepository.findById(book.getId())).thenReturn(Optional.of(book));
+
+        bookService.getBookById(book.getId(), currentUser);
+        ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.getBookById(book.getId(), currentUser);
+
+        assertEquals("Test Book", response.getBody().getData().getTitle());
+        Mockito.verify(bookRepository, Mockito.times(1)).findById(book.getId());
+    }
+
+    @Test
+    @DisplayName("Test that updating a cached book refreshes its cache entry")
+    public void testUpdateBook_RefreshesCache() {
+        User user = new User();
+        user.setEmail("test@test.com");
+        user.setName("Test User");
+        user.setRoles(Roles.USER);
+        UserDetailsImpl currentUser = UserDetailsImpl.build(user);
+
+        Book book = new Book("BookUPD8", "Test Book", "Test Author", "123-456-789", Genre.FICTION, LocalDate.of(2022, 1, 1), 10, user);
+        Mockito.when(bookRepository.findById(book.getId())).thenReturn(Optional.of(book));
+        Mockito.when(bookRepository.save(book)).thenReturn(book);
+        bookService.getBookById(book.getId(), currentUser);
+
+        BookDto edit = new BookDto("New Title", "Test Author", "123-456-789", Genre.FICTION, 10, LocalDate.of(2022, 1, 1), book.getVersion());
+        bookService.updateBook(book.getId(), edit, currentUser);
+        ResponseEntity<ApiResponse<BookDto.Response>> response = bookService.getBookById(book.getId(), currentUser);
+
+        assertEquals("New Title", response.getBody().getData().getTitle());
+        // one read to fill the cache and one for the update; the read after the update is a cache hit
+        Mockito.verify(bookRepository, Mockito.times(2)).findById(book.getId());
+    }
+
+    @Test
+    @DisplayName("Test that a cache miss loading the old copy cannot overwrite the copy of an update that ran meanwhile")
+    public void testUpdateBook_WhileMissIsLoading() throws Exception {
+        User user = new User();
+        user.setEmail("test@test.com");
+        user.setName("Test User");
+        user.setRoles(Roles.USER);
+        UserDetailsImpl currentUser = UserDetailsImpl.build(user);
+
+        // the reader and the writer each load their own copy of the row, as they would in their own transactions
+        Book readCopy = new Book("BookR4C3", "Old Title", "Test Author", "123-456-789", Genre.FICTION, LocalDate.of(2022, 1, 1), 10, user);
+        Book writeCopy = new Book("BookR4C3", "Old Title", "Test Author", "123-456-789", Genre.FICTION, LocalDate.of(2022, 1, 1), 10, user);
+        CountDownLatch updateSaved = new CountDownLatch(1);
+        AtomicInteger reads = new AtomicInteger();
+        Mockito.when(bookRepository.findById(readCopy.getId())).thenAnswer(invocation -> {
+            if (reads.getAndIncrement() > 0) {
+                return Optional.of(writeCopy);
+            }
+            // the reader has read the old row; the update commits and tries to cache its copy before the read finishes
+            assertTrue(updateSaved.await(5, TimeUnit.SECONDS));
+            Thread.sleep(200);
+            return Optional.of(readCopy);
+        });
+        Mockito.when(bookRepository.save(writeCopy)).thenAnswer(invocation -> {
+            updateSaved.countDown();
+            return writeCopy;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> read = executor.submit(() -> bookService.getBookById(readCopy.getId(), currentUser));
+        while (reads.get() == 0) {
+            Thread.sleep(5);
+        }
+        BookDto edit = new BookDto("New Title", "Test Author", "123-456-789", Genre.FICTION, 10, LocalDate.of(2022, 1, 1), writeCopy.getVersion());
+        Future<?> update = executor.submit(() -> bookService.updateBook(readCopy.getId(), edit, currentUser));
+        read.get(5, TimeUnit.SECONDS);
+        update.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertEquals("New Title", bookService.getBookById(readCopy.getId(), currentUser).getBody().getData().getTitle());
+    }
+
+    @Test
+    @DisplayName("Test that removing a cached book evicts it, so it is no longer found")
+    public void testRemoveBook_EvictsCache() {
+        User user = new User();
+        user.setEmail("test@test.com");
+        user.setName("Test User");
+        user.setRoles(Roles.USER);
+        UserDetailsImpl currentUser = UserDetailsImpl.build(user);
+
+        Book book = new Book("BookR3M0", "Test Book", "Test Author", "123-456-789", Genre.FICTION, LocalDate.of(2022, 1, 1), 10, user);
+        Mockito.when(bookRepository.findById(book.getId())).thenReturn(Optional.of(book), Optional.empty());
+        Mockito.when(bookRepository.findForUpdateById(book.getId())).thenReturn(Optional.of(book));
+        bookService.getBookById(book.getId(), currentUser);
+
+        bookService.removeBook(book.getId(), currentUser);
+
+        assertThrows(ResourceNotFoundException.class, () -> bookService.getBookById(book.getId(), currentUser));
+    }
+
+    @Test
+    @DisplayName("Test that a title fragment is searched as an escaped, lower case substring")
+    public void testSearchBooks_ByFragment() {
+        User user = new User();
+        user.setEmail("test@test.com");
+        user.setName("Test User");
+        user.setRoles(Roles.USER);
+        UserDetailsImpl currentUser = UserDetailsImpl.build(user);
+
+        Book book = new Book("BookS34RCH", "100% Java", "Test Author", "123-456-789", Genre.JAVA, LocalDate.of(2022, 1, 1), 10, user);
+        Mockito.when(bookRepository.searchByTitleOrAuthor(Mockito.eq("%100!% java%"), any(Pageable.class))).thenReturn(List.of(view(book)));
+
+        ResponseEntity<ApiResponse<List<BookDto.Response>>> response = bookService.searchBooks(" 100% Java ", null, currentUser);
+
+        assertEquals(1, response.getBody().getData().size());
+        assertEquals("100% Java", response.getBody().getData().get(0).getTitle());
+    }
+
+    @Test
+    @DisplayName("Test that an ISBN is looked up exactly")
+    public void testSearchBooks_ByIsbn() {
+        User user = new User();
+        user.setEmail("test@test.com");
+        user.setName("Test User");
+        user.setRoles(Roles.USER);
+        UserDetailsImpl currentUser = UserDetailsImpl.build(user);
+
+        Book book = new Book("BookI5BN", "Test Book", "Test Author", "978-3-16-148410-0", Genre.FICTION, LocalDate.of(2022, 1, 1), 10, user);
+        Mockito.when(bookRepository.findByIsbn(Mockito.eq("978-3-16-148410-0"), any(Pageable.class))).thenReturn(List.of(view(book)));
+
+        ResponseEntity<ApiResponse<List<BookDto.Response>>> response = bookService.searchBooks("978-3-16-148410-0", null, currentUser);
+
+        assertEquals("BookI5BN", response.getBody().getData().get(0).getId());
+        Mockito.verify(bookRepository, Mockito.never()).searchByTitleOrAuthor(anyString(), any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("Test that a search term too short for the trigram index is rejected")
+    public void testSearchBooks_TooShort() {
+        User user = new User();
+        user.setEmail("test@test.com");
+        user.setName("Test User");
+        user.setRoles(Roles.USER);
+        UserDetailsImpl currentUser = UserDetailsImpl.build(user);
+
+        assertThrows(BadRequestException.class, () -> bookService.searchBooks("ab", null, currentUser));
+        Mockito.verifyNoInteractions(bookRepository);
     }
 
     @Test
     @DisplayName("Test when a book id is not found")
     public void testGetBookById_NotFound() {
-        // Mock the Principal
-        Principal principal = Mockito.mock(Principal.class);
-        Mockito.when(principal.getName()).thenReturn("test@test.com");
-
-        // Create a new User object and mock the UserRepository
+        // Create a new User object and build its UserDetailsImpl
         User user = new User();
         user.setEmail("test@test.com");
         user.setName("Test User");
         user.setRoles(Roles.USER);
-        Mockito.when(userRepository.findByEmail(principal.getName())).thenReturn(Optional.of(user));
+        UserDetailsImpl currentUser = UserDetailsImpl.build(user);
 
         // Mock the BookRepository to return an empty Optional when findById is called
         Mockito.when(bookRepository.findById(anyString())).thenReturn(Optional.empty());
 
         // Expect a ResourceNotFoundException to be thrown
         assertThrows(ResourceNotFoundException.class, () -> {
-            bookService.getBookById("unknown-id", principal);
+            bookService.getBookById("unknown-id", currentUser);
         });
     }
 
     @Test
     @DisplayName("Test to remove book by calling the book id")
     public void testRemoveBook() {
-        // mock the Principal
-        Principal principal = Mockito.mock(Principal.class);
-        Mockito.when(principal.getName()).thenReturn("test@test.com");
-
-        // create a new User object and mock the UserRepository
+        // create a new User object and build its UserDetailsImpl
         User user = new User();
         user.setEmail("test@test.com");
         user.setName("Test User");
         user.setRoles(Roles.USER);
-        Mockito.when(userRepository.findByEmail(principal.getName())).thenReturn(Optional.of(user));
+        UserDetailsImpl currentUser = UserDetailsImpl.build(user);
 
         // create a new Book object and mock the BookRepository
         Book book = new Book("BookJ7EY", "Test Book", "Test Author", "123-456-789", Genre.FICTION, LocalDate.of(2022, 1, 1), 10, user);
-        Mockito.when(bookRepository.findById(anyString())).thenReturn(Optional.of(book));
+        Mockito.when(bookRepository.findForUpdateById(anyString())).thenReturn(Optional.of(book));
 
         // call the method under test
-        bookService.removeBook(book.getId(), principal);
+        bookService.removeBook(book.getId(), currentUser);
 
         // to verify that the delete method was called on the BookRepository
         Mockito.verify(bookRepository, Mockito.times(1)).delete(book);
+
+        // the removed book must no longer be served from the cache or found by search
+        assertNull(cacheManager.getCache(CacheConfig.BOOKS_CACHE).get(book.getId()));
+        Mockito.verify(bookSearchService).removeBook(book.getId());
+    }
+
+    private static BookView view(Book book) {
+        return PROJECTIONS.createProjection(BookView.class, book);
+    }
+
+    private static List<BookView> views(List<Book> books) {
+        List<BookView> views = new ArrayList<>();
+        books.forEach(book -> views.add(view(book)));
+        return views;
     }
 }
@@ -0,0 +1,45 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.exception.ServiceBusyException;
+import com.bitscoder.onlinebookstore.security.services.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    @Test
+    @DisplayName("Test that passwords are hashed with the configured cost and other costs are marked for rehashing")
+    void testHashingAndUpgrade() {
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(5, 1, 10, 5_000, new SimpleMeterRegistry())) {
+            String hash = encoder.encode("secret");
+            assertTrue(hash.startsWith("$2a$05$"));
+            assertTrue(encoder.matches("secret", hash));
+            assertFalse(encoder.matches("wrong", hash));
+
+            assertFalse(encoder.upgradeEncoding(hash));
+            assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("secret")));
+            assertTrue(encoder.upgradeEncoding(new BCryptPasswordEncoder(6).encode("secret")));
+        }
+    }
+
+    @Test
+    @DisplayName("Test that hashes beyond the pool and queue limits are refused at once and counted")
+    void testSaturatedPoolRefuses() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // one thread, one queue slot and a timeout far shorter than a cost 12 hash
+        try (BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(12, 1, 1, 1, registry)) {
+            assertThrows(ServiceBusyException.class, () -> encoder.encode("first"));
+            assertThrows(ServiceBusyException.class, () -> encoder.encode("second"));
+            long started = System.nanoTime();
+            assertThrows(ServiceBusyException.class, () -> encoder.encode("third"));
+            assertTrue(System.nanoTime() - started < 50_000_000L, "a full queue must be refused without waiting");
+
+            assertEquals(3, registry.get("bookstore.password.hash.rejected").counter().count());
+            assertNotNull(registry.find("executor.queued").tag("name", "passwordHashing").gauge());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.dto.CatalogueStatistics;
+import com.bitscoder.onlinebookstore.repository.BookRepository;
+import com.bitscoder.onlinebookstore.repository.GenreStockView;
+import com.bitscoder.onlinebookstore.service.StockService;
+import com.bitscoder.onlinebookstore.service.catalogueStatisticsServiceImpl.CatalogueStatisticsServiceImpl;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class CatalogueStatisticsServiceTest {
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final StockService stockService = mock(StockService.class);
+    private final CatalogueStatisticsServiceImpl statisticsService = new CatalogueStatisticsServiceImpl(bookRepository, stockService, 1000);
+
+    @Test
+    @DisplayName("Test that adding, editing, lending and removing books move the counts of their shelves")
+    void testChangesMoveShelves() {
+        statisticsService.bookAdded(Genre.FICTION, 5);
+        statisticsService.bookAdded(Genre.FICTION, 2);
+        statisticsService.bookAdded(Genre.DRAMA, 1);
+        statisticsService.stockChanged(Genre.FICTION, -1);
+        statisticsService.bookChanged(Genre.DRAMA, 1, Genre.HISTORY, 4);
+        statisticsService.bookRemoved(Genre.FICTION, 2);
+        statisticsService.bookAdded(null, 3);
+
+        CatalogueStatistics statistics = statisticsService.statistics();
+        assertEquals(new CatalogueStatistics.Shelf(1, 4), statistics.getShelves().get(Genre.FICTION));
+        assertEquals(new CatalogueStatistics.Shelf(0, 0), statistics.getShelves().get(Genre.DRAMA));
+        assertEquals(new CatalogueStatistics.Shelf(1, 4), statistics.getShelves().get(Genre.HISTORY));
+        assertEquals(Genre.values().length, statistics.getShelves().size());
+        assertEquals(2, statistics.getTitles());
+        assertEquals(8, statistics.getCopies());
+    }
+
+    @Test
+    @DisplayName("Test that reconciling flushes the stock and corrects the shelves to the database counts")
+    void testReconcile() {
+        statisticsService.bookAdded(Genre.FICTION, 5);
+        statisticsService.bookAdded(Genre.JAVA, 1);
+        when(bookRepository.countByGenre()).thenReturn(List.of(shelf(Genre.FICTION, 2, 9), shelf(null, 1, 1)));
+
+        statisticsService.reconcile();
+
+        verify(stockService).flush();
+        CatalogueStatistics statistics = statisticsService.statistics();
+        assertEquals(new CatalogueStatistics.Shelf(2, 9), statistics.getShelves().get(Genre.FICTION));
+        assertEquals(new CatalogueStatistics.Shelf(0, 0), statistics.getShelves().get(Genre.JAVA));
+        assertEquals(2, statistics.getTitles());
+        assertNotNull(statistics.getReconciledAt());
+    }
+
+    @Test
+    @DisplayName("Test that a shelf changed while the database was counted is left for the next reconcile")
+    void testReconcileSkipsShelfChangedDuringQuery() {
+        when(bookRepository.countByGenre()).thenAnswer(invocation -> {
+            statisticsService.bookAdded(Genre.FICTION, 3);
+            return List.of(shelf(Genre.DRAMA, 1, 2));
+        });
+
+        statisticsService.reconcile();
+
+        CatalogueStatistics statistics = statisticsService.statistics();
+        assertEquals(new CatalogueStatistics.Shelf(1, 3), statistics.getShelves().get(Genre.FICTION));
+        assertEquals(new CatalogueStatistics.Shelf(1, 2), statistics.getShelves().get(Genre.DRAMA));
+    }
+
+    @Test
+    @DisplayName("Test that a write the database already counted is not counted twice when its counts move late")
+    void testReconcileWaitsForWriteUnderWay() throws Exception {
+        // the write has committed, but has not yet moved its counts when the database is counted
+        long change = statisticsService.changeStarting();
+        when(bookRepository.countByGenre()).thenReturn(List.of(shelf(Genre.FICTION, 1, 3)));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?> write = executor.submit(() -> {
+            Thread.sleep(200);
+            statisticsService.bookAdded(Genre.FICTION, 3);
+            statisticsService.changeFinished(change);
+            return null;
+        });
+
+        statisticsService.reconcile();
+        write.get();
+        executor.shutdown();
+
+        assertEquals(new CatalogueStatistics.Shelf(1, 3), statisticsService.statistics().getShelves().get(Genre.FICTION));
+    }
+
+    @Test
+    @DisplayName("Test that a reconcile gives up, correcting nothing, when a write stays under way too long")
+    void testReconcileGivesUpOnStuckWrite() {
+        CatalogueStatisticsServiceImpl impatient = new CatalogueStatisticsServiceImpl(bookRepository, stockService, 50);
+        impatient.changeStarting();
+        when(bookRepository.countByGenre()).thenReturn(List.of(shelf(Genre.FICTION, 1, 3)));
+
+        impatient.reconcile();
+
+        CatalogueStatistics statistics = impatient.statistics();
+        assertEquals(new CatalogueStatistics.Shelf(0, 0), statistics.getShelves().get(Genre.FICTION));
+        assertNull(statistics.getReconciledAt());
+    }
+
+    @Test
+    @DisplayName("Test that concurrent changes to one shelf are all counted")
+    void testConcurrentChanges() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    statisticsService.bookAdded(Genre.SCI_FI, 2);
+                    statisticsService.stockChanged(Genre.SCI_FI, -1);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(new CatalogueStatistics.Shelf(8000, 8000), statisticsService.statistics().getShelves().get(Genre.SCI_FI));
+    }
+
+
+    // HELPER METHODS
+    private static GenreStockView shelf(Genre genre, long titles, long copies) {
+        return new GenreStockView() {
+            @Override
+            public Genre getGenre() {
+                return genre;
+            }
+
+            @Override
+            public long getTitles() {
+                return titles;
+            }
+
+            @Override
+            public long getCopies() {
+                return copies;
+            }
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.controller.ChunkedBookRows;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedBookRowsTest {
+
+    @Test
+    @DisplayName("Test that the rows are read one page at a time, flushing the response before each page")
+    void testPagesAreReadLazily() {
+        List<String> cursors = new ArrayList<>();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        ChunkedBookRows rows = new ChunkedBookRows(after -> {
+            cursors.add(after);
+            return after == null
+                    ? new BookDto.Page(List.of(book("Book1"), book("Book2")), "Book2", true)
+                    : new BookDto.Page(List.of(book("Book3")), null, false);
+        }, response);
+
+        Iterator<BookDto.Response> iterator = rows.iterator();
+        assertTrue(cursors.isEmpty());
+        assertEquals("Book1", iterator.next().getId());
+        assertTrue(response.isCommitted());
+        assertEquals("Book2", iterator.next().getId());
+        assertEquals(1, cursors.size());
+
+        assertEquals("Book3", iterator.next().getId());
+        assertFalse(iterator.hasNext());
+        assertEquals(List.of("Book2"), cursors.subList(1, cursors.size()));
+    }
+
+    @Test
+    @DisplayName("Test that the rows can only be streamed once")
+    void testRowsAreIteratedOnce() {
+        ChunkedBookRows rows = new ChunkedBookRows(after -> new BookDto.Page(List.of(), null, false), null);
+        assertFalse(rows.iterator().hasNext());
+        assertThrows(IllegalStateException.class, rows::iterator);
+    }
+
+
+    // HELPER METHODS
+    private static BookDto.Response book(String id) {
+        return new BookDto.Response(id, "Title", "Author", "978-0-00-000000-0", Genre.FICTION,
+                LocalDate.of(2020, 1, 1), 3, null, 0L);
+    }
+}
@@ -0,0 +1,140 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.controller.BookController;
+import com.bitscoder.onlinebookstore.dto.ApiResponse;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.service.BookImportService;
+import com.bitscoder.onlinebookstore.service.BookLoanService;
+import com.bitscoder.onlinebookstore.service.BookSearchService;
+import com.bitscoder.onlinebookstore.service.BookService;
+import com.bitscoder.onlinebookstore.service.CatalogueStatisticsService;
+import com.bitscoder.onlinebookstore.service.catalogueVersionServiceImpl.CatalogueVersionServiceImpl;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.view.InternalResourceViewResolver;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class ConditionalBookPageTest {
+
+    private final BookService bookService = mock(BookService.class);
+    private final BookSearchService bookSearchService = mock(BookSearchService.class);
+    private final CatalogueVersionServiceImpl catalogueVersionService = new CatalogueVersionServiceImpl(100, 600_000);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        BookController controller = new BookController(bookService, mock(BookImportService.class), bookSearchService,
+                mock(BookLoanService.class), catalogueVersionService, mock(CatalogueStatisticsService.class),
+                new CookieCsrfTokenRepository());
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                .setViewResolvers(new InternalResourceViewResolver("/templates/", ".html"))
+                .build();
+
+        List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority(Roles.USER.name()));
+        UserDetailsImpl user = new UserDetailsImpl("User01", "Reader", "reader@bookstore.com", "secret", Roles.USER, authorities);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, authorities));
+
+        when(bookService.getAllBooks(any(), anyInt(), any())).thenReturn(ResponseEntity.ok(
+                new ApiResponse<>(LocalDateTime.now(), UUID.randomUUID().toString(), true, "Fetched",
+                        new BookDto.Page(List.of(), null, false))));
+        when(bookService.getBookById(any(), any())).thenAnswer(invocation -> ResponseEntity.ok(
+                new ApiResponse<>(LocalDateTime.now(), UUID.randomUUID().toString(), true, "Fetched",
+                        new BookDto.Response(invocation.getArgument(0), "Title", "Author", "978-0-00-000000-0",
+                                Genre.FICTION, LocalDate.of(2020, 1, 1), 3, null, 0L))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("Test that an unchanged catalogue page is answered with 304 without reading any books")
+    void testCataloguePageNotModified() throws Exception {
+        String etag = fetchETag("/app/books");
+
+        mockMvc.perform(page("/app/books").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        verify(bookService, times(1)).getAllBooks(any(), anyInt(), any());
+
+        catalogueVersionService.bookChanged("Book1");
+        mockMvc.perform(page("/app/books").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        verify(bookService, times(2)).getAllBooks(any(), anyInt(), any());
+    }
+
+    @Test
+    @DisplayName("Test that a book page only changes its ETag when that book changes")
+    void testBookPageNotModified() throws Exception {
+        String etag = fetchETag("/app/book/Book1");
+
+        catalogueVersionService.bookChanged("Book2");
+        mockMvc.perform(get("/app/book/Book1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        catalogueVersionService.bookChanged("Book1");
+        String changedETag = fetchETag("/app/book/Book1");
+        assertNotEquals(etag, changedETag);
+        verify(bookService, times(2)).getBookById(eq("Book1"), any());
+    }
+
+    @Test
+    @DisplayName("Test that a page carrying a flash message is always rendered")
+    void testFlashMessageIsRendered() throws Exception {
+        String etag = fetchETag("/app/books");
+
+        mockMvc.perform(page("/app/books").header(HttpHeaders.IF_NONE_MATCH, etag).flashAttr("successMessage", "Imported"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+    }
+
+
+    // HELPER METHODS
+    private String fetchETag(String url) throws Exception {
+        MvcResult result = mockMvc.perform(page(url))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                .andReturn();
+        String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        return etag;
+    }
+
+    // the CSRF token cookie the security chain has set by the time a page is requested
+    private static MockHttpServletRequestBuilder page(String url) {
+        return get(url).cookie(new Cookie("XSRF-TOKEN", "csrf-token"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.constant.Genre;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.security.CookieFlashMapManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.FlashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CookieFlashMapManagerTest {
+
+    private static final String SECRET = "c2VjcmV0LWtleS1mb3ItdGVzdGluZy1vbmx5LTAxMjM0NTY3ODlhYmNkZWY=";
+
+    private final CookieFlashMapManager flashMapManager = new CookieFlashMapManager(
+            new ObjectMapper().registerModule(new JavaTimeModule()).disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS), SECRET);
+
+    @Test
+    @DisplayName("Test that flash attributes survive the redirect in a cookie, without a session")
+    void testFlashAttributesRoundTrip() {
+        Cookie cookie = redirectWith(new BookDto.Response("Book1", "Dune", "Herbert", "978-0-441-17271-9",
+                Genre.FICTION, LocalDate.of(1965, 8, 1), 3, null, 0L));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app/bookDetails");
+        request.setCookies(cookie);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FlashMap flashMap = flashMapManager.retrieveAndUpdate(request, response);
+
+        assertNotNull(flashMap);
+        assertEquals("Book added", flashMap.get("successMessage"));
+        Map<?, ?> book = (Map<?, ?>) flashMap.get("book");
+        assertEquals("Dune", book.get("title"));
+        assertEquals("1965-08-01", book.get("publicationYear"));
+        // once used, the cookie is dropped
+        assertEquals(0, response.getCookie("flash").getMaxAge());
+        assertNull(request.getSession(false));
+    }
+
+    @Test
+    @DisplayName("Test that a flash cookie with a changed payload is ignored")
+    void testTamperedCookieIsIgnored() {
+        Cookie cookie = redirectWith(null);
+        String[] parts = cookie.getValue().split("\\.");
+        String forged = parts[0].substring(0, parts[0].length() - 2) + "AA." + parts[1];
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app/bookDetails");
+        request.setCookies(new Cookie("flash", forged));
+        assertNull(flashMapManager.retrieveAndUpdate(request, new MockHttpServletResponse()));
+    }
+
+    @Test
+    @DisplayName("Test that a flash cookie signed with the JWT secret itself is ignored")
+    void testJwtSecretDoesNotSignFlashCookies() throws Exception {
+        String payload = redirectWith(null).getValue().split("\\.")[0];
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(Base64.getDecoder().decode(SECRET), "HmacSHA256"));
+        String signature = Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.US_ASCII)));
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app/bookDetails");
+        request.setCookies(new Cookie("flash", payload + "." + signature));
+        assertNull(flashMapManager.retrieveAndUpdate(request, new MockHttpServletResponse()));
+    }
+
+
+    // HELPER METHODS
+    private Cookie redirectWith(BookDto.Response book) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/app/add");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FlashMap flashMap = new FlashMap();
+        flashMap.put("successMessage", "Book added");
+        if (book != null) {
+            flashMap.put("book", book);
+        }
+        flashMap.setTargetRequestPath("/app/bookDetails");
+        flashMapManager.saveOutputFlashMap(flashMap, request, response);
+        Cookie cookie = response.getCookie("flash");
+        assertNotNull(cookie);
+        assertTrue(cookie.isHttpOnly());
+        return cookie;
+    }
+}
@@ -0,0 +1,142 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.controller.BookController;
+import com.bitscoder.onlinebookstore.dto.ApiResponse;
+import com.bitscoder.onlinebookstore.dto.BookDto;
+import com.bitscoder.onlinebookstore.security.WebSecurityConfig;
+import com.bitscoder.onlinebookstore.security.jwt.JwtUtils;
+import com.bitscoder.onlinebookstore.security.services.PrincipalCache;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsServiceImpl;
+import com.bitscoder.onlinebookstore.service.BookImportService;
+import com.bitscoder.onlinebookstore.service.BookLoanService;
+import com.bitscoder.onlinebookstore.service.BookSearchService;
+import com.bitscoder.onlinebookstore.service.BookService;
+import com.bitscoder.onlinebookstore.service.CatalogueStatisticsService;
+import com.bitscoder.onlinebookstore.service.CatalogueVersionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * The book list, whose Remove and Borrow forms carry the CSRF token, behind the real security chain: a copy stored by
+ * the browser is only reused while the XSRF-TOKEN cookie still holds the token it was rendered with.
+ */
+@WebMvcTest(BookController.class)
+@Import({WebSecurityConfig.class, CsrfBookPageTest.Metrics.class})
+class CsrfBookPageTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private BookService bookService;
+
+    @MockBean
+    private BookImportService bookImportService;
+
+    @MockBean
+    private BookSearchService bookSearchService;
+
+    @MockBean
+    private BookLoanService bookLoanService;
+
+    @MockBean
+    private CatalogueVersionService catalogueVersionService;
+
+    @MockBean
+    private CatalogueStatisticsService catalogueStatisticsService;
+
+    @MockBean
+    private UserDetailsServiceImpl userDetailsService;
+
+    @MockBean
+    private JwtUtils jwtUtils;
+
+    @MockBean
+    private PrincipalCache principalCache;
+
+    private UserDetailsImpl reader;
+
+    @TestConfiguration
+    static class Metrics {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        List<GrantedAuthority> authorities = List.of(new SimpleGrantedAuthority(Roles.USER.name()));
+        reader = new UserDetailsImpl("User01", "Reader", "reader@bookstore.com", "secret", Roles.USER, authorities);
+
+        when(catalogueVersionService.catalogueTag()).thenReturn("1");
+        when(bookService.getAllBooks(any(), anyInt(), any())).thenReturn(ResponseEntity.ok(
+                new ApiResponse<>(LocalDateTime.now(), UUID.randomUUID().toString(), true, "Fetched",
+                        new BookDto.Page(List.of(), null, false))));
+    }
+
+    @Test
+    @DisplayName("Test that the book list changes its ETag when the CSRF token cookie is replaced")
+    void testETagFollowsCsrfToken() throws Exception {
+        // the first visit has no token yet: the page gets the one issued with it and no ETag
+        MvcResult first = mockMvc.perform(get("/app/books").with(user(reader)))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG))
+                .andReturn();
+        Cookie issued = first.getResponse().getCookie("XSRF-TOKEN");
+        assertNotNull(issued);
+
+        String etag = fetchETag(issued);
+        mockMvc.perform(get("/app/books").with(user(reader)).cookie(issued).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // as after a browser restart: the stored page holds the old token, the cookie a new one
+        Cookie replaced = new Cookie("XSRF-TOKEN", UUID.randomUUID().toString());
+        mockMvc.perform(get("/app/books").with(user(reader)).cookie(replaced).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        assertNotEquals(etag, fetchETag(replaced));
+    }
+
+
+    // HELPER METHODS
+    private String fetchETag(Cookie csrfCookie) throws Exception {
+        MvcResult result = mockMvc.perform(get("/app/books").with(user(reader)).cookie(csrfCookie))
+                .andExpect(status().isOk())
+                .andReturn();
+        String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        return etag;
+    }
+}
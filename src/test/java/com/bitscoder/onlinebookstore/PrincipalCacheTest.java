@@ -0,0 +1,135 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.models.User;
+import com.bitscoder.onlinebookstore.security.jwt.AuthTokenFilter;
+import com.bitscoder.onlinebookstore.security.jwt.JwtUtils;
+import com.bitscoder.onlinebookstore.security.services.AuthService;
+import com.bitscoder.onlinebookstore.security.services.PrincipalCache;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsServiceImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The principal cache as the AuthTokenFilter and the AuthService use it: a token that was seen before is
+ * authenticated without parsing it or loading the user, until the token expires or its user logs out.
+ */
+@ExtendWith(MockitoExtension.class)
+class PrincipalCacheTest {
+
+    private static final String TOKEN = "header.payload.signature";
+
+    @Mock
+    private JwtUtils jwtUtils;
+
+    @Mock
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Spy
+    private PrincipalCache principalCache = new PrincipalCache(300_000, 100);
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private AuthTokenFilter authTokenFilter;
+
+    private UserDetailsImpl reader;
+
+    @BeforeEach
+    void setup() {
+        authTokenFilter.init();
+        User user = new User();
+        user.setName("Reader");
+        user.setEmail("reader@test.com");
+        user.setRoles(Roles.USER);
+        reader = UserDetailsImpl.build(user);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    @DisplayName("Test that a token seen before is authenticated without parsing it or loading the user")
+    void testRepeatedTokenSkipsUserLookup() throws Exception {
+        Mockito.when(jwtUtils.getClaimsFromJwtToken(TOKEN)).thenReturn(claims(reader.getUsername(), 60_000));
+        Mockito.when(userDetailsService.loadUserByUsername(reader.getUsername())).thenReturn(reader);
+
+        assertSame(reader, authenticate(TOKEN).getPrincipal());
+        assertSame(reader, authenticate(TOKEN).getPrincipal());
+
+        Mockito.verify(jwtUtils, Mockito.times(1)).getClaimsFromJwtToken(TOKEN);
+        Mockito.verify(userDetailsService, Mockito.times(1)).loadUserByUsername(reader.getUsername());
+        assertEquals(1, meterRegistry.get("bookstore.auth.token").tag("outcome", "cached").timer().count());
+    }
+
+    @Test
+    @DisplayName("Test that a cached principal expires with its token, however long the cache would keep it")
+    void testEntryExpiresWithToken() throws InterruptedException {
+        principalCache.put("expired", reader, new Date(System.currentTimeMillis() - 1_000));
+        principalCache.put("expiring", reader, new Date(System.currentTimeMillis() + 200));
+
+        assertNull(principalCache.get("expired"));
+        assertSame(reader, principalCache.get("expiring"));
+        Thread.sleep(400);
+        assertNull(principalCache.get("expiring"));
+    }
+
+    @Test
+    @DisplayName("Test that logging out evicts the token, so its next request loads the user again")
+    void testLogoutEvictsToken() {
+        principalCache.put(TOKEN, reader, new Date(System.currentTimeMillis() + 60_000));
+        AuthService authService = new AuthService(null, null, null, null, principalCache, null);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/auth/logout");
+        request.setCookies(new Cookie("token", TOKEN));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        authService.logout(request, response);
+
+        assertNull(principalCache.get(TOKEN));
+        assertEquals(0, response.getCookie("token").getMaxAge());
+    }
+
+
+    // HELPER METHODS
+    private Authentication authenticate(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/app/books");
+        request.setServletPath("/app/books");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        authTokenFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private static Claims claims(String subject, long validForMs) {
+        return Jwts.claims()
+                .setSubject(subject)
+                .setExpiration(new Date(System.currentTimeMillis() + validForMs));
+    }
+}
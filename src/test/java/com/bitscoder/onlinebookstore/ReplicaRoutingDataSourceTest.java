@@ -0,0 +1,181 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.config.ReadFromReplica;
+import com.bitscoder.onlinebookstore.config.ReadFromReplicaAspect;
+import com.bitscoder.onlinebookstore.config.ReplicaRoutingDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Two embedded databases stand in for a primary and its read replica; each knows its own name, so a query shows
+ * which one served it. The replica's lag is whatever its replica_lag table says.
+ */
+@SpringJUnitConfig(ReplicaRoutingDataSourceTest.Config.class)
+class ReplicaRoutingDataSourceTest {
+
+    @Autowired
+    private ShelfReader shelfReader;
+
+    @Autowired
+    private ReplicaRoutingDataSource routingDataSource;
+
+    // outside a transaction, so on the primary
+    @Autowired
+    private JdbcTemplate primary;
+
+    private final JdbcTemplate replica = new JdbcTemplate(Config.REPLICA);
+
+    @BeforeEach
+    void setUp() {
+        primary.execute("create table if not exists server (name varchar(20))");
+        primary.execute("delete from server");
+        primary.execute("insert into server values ('primary')");
+        replica.execute("create table if not exists server (name varchar(20))");
+        replica.execute("delete from server");
+        replica.execute("insert into server values ('replica')");
+        replica.execute("create table if not exists replica_lag (ms bigint)");
+        replica.execute("delete from replica_lag");
+        replica.execute("insert into replica_lag values (0)");
+        routingDataSource.checkReplicas();
+    }
+
+    @Test
+    @DisplayName("Test that only @ReadFromReplica reads are sent to the replica")
+    void testRouting() {
+        assertEquals(1, routingDataSource.availableReplicas());
+        assertEquals("replica", shelfReader.readFromReplica());
+        assertEquals("primary", shelfReader.readOnly());
+        assertEquals("primary", shelfReader.readWrite());
+        assertEquals("primary", shelfReader.withoutTransaction());
+    }
+
+    @Test
+    @DisplayName("Test that reads fall back to the primary while the replica lags, and return once it catches up")
+    void testLagFallback() {
+        replica.update("update replica_lag set ms = 5000");
+        routingDataSource.checkReplicas();
+        assertEquals(0, routingDataSource.availableReplicas());
+        assertEquals("primary", shelfReader.readFromReplica());
+
+        replica.update("update replica_lag set ms = 200");
+        routingDataSource.checkReplicas();
+        assertEquals("replica", shelfReader.readFromReplica());
+    }
+
+    @Test
+    @DisplayName("Test that reads fall back to the primary when the replica cannot report its lag")
+    void testUnreachableReplica() {
+        replica.execute("drop table replica_lag");
+        routingDataSource.checkReplicas();
+        assertEquals(0, routingDataSource.availableReplicas());
+        assertEquals("primary", shelfReader.readFromReplica());
+    }
+
+    @Test
+    @DisplayName("Test that replica reads go to the primary when no replica is configured")
+    void testNoReplicas() throws Exception {
+        ReplicaRoutingDataSource withoutReplicas = new ReplicaRoutingDataSource(Config.PRIMARY, List.of(), "select ms from replica_lag", 1000);
+        boolean previous = ReplicaRoutingDataSource.enterReplicaReads();
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        try {
+            assertEquals("primary", new JdbcTemplate(withoutReplicas).queryForObject("select name from server", String.class));
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            ReplicaRoutingDataSource.exitReplicaReads(previous);
+        }
+    }
+
+
+    // HELPER METHODS
+    static class ShelfReader {
+
+        private final JdbcTemplate jdbcTemplate;
+
+        ShelfReader(JdbcTemplate jdbcTemplate) {
+            this.jdbcTemplate = jdbcTemplate;
+        }
+
+        @ReadFromReplica
+        public String readFromReplica() {
+            return server();
+        }
+
+        @Transactional(readOnly = true)
+        public String readOnly() {
+            return server();
+        }
+
+        @Transactional
+        public String readWrite() {
+            return server();
+        }
+
+        public String withoutTransaction() {
+            return server();
+        }
+
+        private String server() {
+            return jdbcTemplate.queryForObject("select name from server", String.class);
+        }
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    @EnableAspectJAutoProxy(proxyTargetClass = true)
+    static class Config {
+
+        static final DataSource PRIMARY = new DriverManagerDataSource("jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1", "sa", "");
+        static final DataSource REPLICA = new DriverManagerDataSource("jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1", "sa", "");
+
+        @Bean
+        ReplicaRoutingDataSource replicaRoutingDataSource() {
+            return new ReplicaRoutingDataSource(PRIMARY, List.of(REPLICA), "select ms from replica_lag", 1000);
+        }
+
+        @Bean
+        @Primary
+        DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+            return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager(DataSource dataSource) {
+            return new DataSourceTransactionManager(dataSource);
+        }
+
+        @Bean
+        JdbcTemplate jdbcTemplate(DataSource dataSource) {
+            return new JdbcTemplate(dataSource);
+        }
+
+        @Bean
+        ShelfReader shelfReader(JdbcTemplate jdbcTemplate) {
+            return new ShelfReader(jdbcTemplate);
+        }
+
+        @Bean
+        ReadFromReplicaAspect readFromReplicaAspect() {
+            return new ReadFromReplicaAspect();
+        }
+    }
+}
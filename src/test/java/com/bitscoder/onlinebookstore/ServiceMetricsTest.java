@@ -0,0 +1,70 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.constant.Roles;
+import com.bitscoder.onlinebookstore.exception.UnauthorizedException;
+import com.bitscoder.onlinebookstore.repository.BookLoanRepository;
+import com.bitscoder.onlinebookstore.repository.BookRepository;
+import com.bitscoder.onlinebookstore.repository.UserRepository;
+import com.bitscoder.onlinebookstore.security.services.UserDetailsImpl;
+import com.bitscoder.onlinebookstore.service.BookSearchService;
+import com.bitscoder.onlinebookstore.service.BookService;
+import com.bitscoder.onlinebookstore.service.CatalogueStatisticsService;
+import com.bitscoder.onlinebookstore.service.CatalogueVersionService;
+import com.bitscoder.onlinebookstore.service.StockService;
+import com.bitscoder.onlinebookstore.service.bookServiceImpl.BookServiceImpl;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class ServiceMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("Test that BookService calls are timed per method and tagged with their exception")
+    void testBookServiceTimers() {
+        BookService bookService = timed(new BookServiceImpl(mock(BookRepository.class), mock(BookLoanRepository.class),
+                mock(UserRepository.class), new ConcurrentMapCacheManager(), mock(BookSearchService.class),
+                mock(StockService.class), mock(CatalogueVersionService.class), mock(CatalogueStatisticsService.class),
+                new TransactionTemplate(mock(PlatformTransactionManager.class))));
+        UserDetailsImpl user = new UserDetailsImpl("User01", "Reader", "reader@bookstore.com", "secret", Roles.USER,
+                List.of(new SimpleGrantedAuthority(Roles.USER.name())));
+        UserDetailsImpl guest = new UserDetailsImpl("User02", "Guest", "guest@bookstore.com", "secret", Roles.NOT_ADMIN,
+                List.of(new SimpleGrantedAuthority(Roles.NOT_ADMIN.name())));
+
+        bookService.getAllBooks(null, 20, user);
+        bookService.getAllBooks("Book1", 20, user);
+        assertThrows(UnauthorizedException.class, () -> bookService.removeBook("Book1", guest));
+
+        assertEquals(2, timer("getAllBooks", "none").count());
+        assertEquals(1, timer("removeBook", "UnauthorizedException").count());
+    }
+
+
+    // HELPER METHODS
+    private BookService timed(BookService target) {
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(target);
+        proxyFactory.addAspect(new TimedAspect(meterRegistry));
+        return proxyFactory.getProxy();
+    }
+
+    private Timer timer(String method, String exception) {
+        return meterRegistry.get("bookstore.book.service")
+                .tag("method", method)
+                .tag("exception", exception)
+                .timer();
+    }
+}
@@ -0,0 +1,37 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.util.TimeOrderedId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeOrderedIdTest {
+
+    @Test
+    @DisplayName("Test that ids are unique and sort in the order they were generated")
+    void testIdsAreUniqueAndOrdered() {
+        Set<String> seen = new HashSet<>();
+        String previous = "";
+        for (int i = 0; i < 200_000; i++) {
+            String id = TimeOrderedId.next("Book");
+            assertTrue(id.compareTo(previous) > 0, id + " does not sort after " + previous);
+            assertTrue(seen.add(id));
+            previous = id;
+        }
+    }
+
+    @Test
+    @DisplayName("Test the id format and the detection of legacy ids")
+    void testFormat() {
+        String id = TimeOrderedId.next("User");
+
+        assertEquals("User".length() + TimeOrderedId.LENGTH, id.length());
+        assertTrue(id.substring(4).matches("[0-9A-HJKMNP-TV-Z]+"));
+        assertTrue(TimeOrderedId.isTimeOrdered(id, "User"));
+        assertFalse(TimeOrderedId.isTimeOrdered("User1a2b3", "User"));
+    }
+}
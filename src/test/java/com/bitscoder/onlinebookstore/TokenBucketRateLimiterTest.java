@@ -0,0 +1,111 @@
+package com.bitscoder.onlinebookstore;
+
+import com.bitscoder.onlinebookstore.security.ratelimit.AuthRateLimitFilter;
+import com.bitscoder.onlinebookstore.security.ratelimit.TokenBucketRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    @DisplayName("Test that a bucket permits its burst, then refills one token per interval")
+    void testBurstAndRefill() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(3, 60, 100, now::get);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("key"));
+        }
+        long wait = limiter.tryAcquire("key");
+        assertEquals(TimeUnit.SECONDS.toNanos(1), wait);
+        assertEquals(0, limiter.tryAcquire("other"));
+
+        now.addAndGet(wait);
+        assertEquals(0, limiter.tryAcquire("key"));
+        assertTrue(limiter.tryAcquire("key") > 0);
+
+        // idle for longer than the whole bucket takes to refill: back to a full burst, never more
+        now.addAndGet(TimeUnit.MINUTES.toNanos(10));
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("key"));
+        }
+        assertTrue(limiter.tryAcquire("key") > 0);
+    }
+
+    @Test
+    @DisplayName("Test that concurrent requests for one key never take more than the burst")
+    void testConcurrentAcquire() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(100, 1, 100, now::get);
+        AtomicInteger permitted = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 1000; i++) {
+                    if (limiter.tryAcquire("hot") == 0) {
+                        permitted.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertEquals(100, permitted.get());
+    }
+
+    @Test
+    @DisplayName("Test that the filter limits sign-ins per IP and per email and leaves other requests alone")
+    void testFilter() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AuthRateLimitFilter filter = new AuthRateLimitFilter(
+                new TokenBucketRateLimiter(3, 1, 100, now::get),
+                new TokenBucketRateLimiter(2, 1, 100, now::get),
+                registry);
+
+        assertEquals(200, signIn(filter, "10.0.0.1", "Reader@Test.com").getStatus());
+        assertEquals(200, signIn(filter, "10.0.0.2", "reader@test.com").getStatus());
+        MockHttpServletResponse refused = signIn(filter, "10.0.0.3", "reader@test.com");
+        assertEquals(429, refused.getStatus());
+        assertEquals("60", refused.getHeader("Retry-After"));
+
+        assertEquals(200, signIn(filter, "10.0.0.1", "a@test.com").getStatus());
+        assertEquals(200, signIn(filter, "10.0.0.1", "b@test.com").getStatus());
+        assertEquals(429, signIn(filter, "10.0.0.1", "c@test.com").getStatus());
+
+        MockHttpServletRequest browse = new MockHttpServletRequest("GET", "/app/books");
+        browse.setRemoteAddr("10.0.0.1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(browse, response, new MockFilterChain());
+        assertEquals(200, response.getStatus());
+
+        assertEquals(1, registry.get("bookstore.auth.rate.limited").tag("bucket", "email").counter().count());
+        assertEquals(1, registry.get("bookstore.auth.rate.limited").tag("bucket", "ip").counter().count());
+    }
+
+    private MockHttpServletResponse signIn(AuthRateLimitFilter filter, String ip, String email) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/auth/login");
+        request.setRemoteAddr(ip);
+        request.setParameter("email", email);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}